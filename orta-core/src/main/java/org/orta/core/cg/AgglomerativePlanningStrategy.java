@@ -0,0 +1,184 @@
+package org.orta.core.cg;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import org.orta.core.util.bitmap.RoaringBitSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Bottom-up clustering of the entry keys. It repeatedly merges the two clusters that share the most impacts into
+ * a new cluster whose placeholder is their shared impacts, until no two clusters share anything. A merged
+ * cluster that shares as much as its parent is flattened into the parent, so that no key analyzes nothing.
+ *
+ * <p>All pairs of entries are scored up front, so this takes time and memory quadratic in the number of entries.
+ */
+final class AgglomerativePlanningStrategy extends PlanningStrategy {
+
+  AgglomerativePlanningStrategy() {
+    super("agglomerative");
+  }
+
+  @Override
+  Collection<OrderingKey> plan(List<OrderingKey> entries, ORTASetting setting) {
+    List<Cluster> active = new ArrayList<>(entries.size());
+    for (OrderingKey entry : entries) {
+      active.add(new Cluster(active.size(), entry));
+    }
+
+    PriorityQueue<Pair> pairs = new PriorityQueue<>();
+    for (int i = 0; i < active.size(); i++) {
+      for (int j = i + 1; j < active.size(); j++) {
+        addPair(pairs, active.get(i), active.get(j));
+      }
+    }
+
+    int nextId = active.size();
+    List<Cluster> merged = new ArrayList<>();
+    while (!pairs.isEmpty()) {
+      Pair pair = pairs.poll();
+      if (pair.lhs.merged || pair.rhs.merged) {
+        continue;
+      }
+
+      pair.lhs.merged = true;
+      pair.rhs.merged = true;
+      Cluster cluster = new Cluster(nextId++, pair.lhs.impacts.and(pair.rhs.impacts));
+      cluster.absorb(pair.lhs);
+      cluster.absorb(pair.rhs);
+      merged.add(cluster);
+
+      active.removeIf(c -> c.merged);
+      for (Cluster other : active) {
+        addPair(pairs, other, cluster);
+      }
+      active.add(cluster);
+    }
+
+    // children are always merged before their parents.
+    for (Cluster cluster : merged) {
+      if (!cluster.flattened) {
+        cluster.createKey();
+      }
+    }
+
+    List<OrderingKey> roots = new ArrayList<>(active.size());
+    for (Cluster cluster : active) {
+      roots.add(cluster.key);
+    }
+
+    return roots;
+  }
+
+  private static void addPair(PriorityQueue<Pair> pairs, Cluster lhs, Cluster rhs) {
+    int score = lhs.impacts.andScore(rhs.impacts);
+    if (score > 0) {
+      pairs.add(new Pair(lhs, rhs, score));
+    }
+  }
+
+  private static final class Cluster {
+    private final int id;
+    private final ImpactBitSet impacts;
+    private final int score;
+    private final List<Cluster> children = new ArrayList<>();
+    private OrderingKey key;
+    private boolean merged;
+    private boolean flattened;
+
+    Cluster(int id, OrderingKey entry) {
+      this.id = id;
+      this.impacts = entry.getPlaceholder().getImpactBits();
+      this.score = impacts.getScore();
+      this.key = entry;
+    }
+
+    Cluster(int id, ImpactBitSet impacts) {
+      this.id = id;
+      this.impacts = impacts;
+      this.score = impacts.getScore();
+    }
+
+    void absorb(Cluster child) {
+      if (child.key == null && child.score == score) {
+        child.flattened = true;
+        children.addAll(child.children);
+      } else {
+        children.add(child);
+      }
+    }
+
+    void createKey() {
+      RoaringBitSet klasses = new RoaringBitSet();
+      for (Cluster child : children) {
+        klasses = klasses.union(child.key.getKlasses());
+      }
+
+      key = new OrderingKey(klasses, new Placeholder(impacts));
+      for (Cluster child : children) {
+        child.key.setParent(key);
+      }
+    }
+  }
+
+  private static final class Pair implements Comparable<Pair> {
+    private final Cluster lhs;
+    private final Cluster rhs;
+    private final int score;
+
+    Pair(Cluster lhs, Cluster rhs, int score) {
+      this.lhs = lhs;
+      this.rhs = rhs;
+      this.score = score;
+    }
+
+    @Override
+    public int compareTo(Pair o) {
+      int diff = o.score - score;
+      if (diff == 0) {
+        diff = Integer.compare(lhs.id, o.lhs.id);
+      }
+
+      if (diff == 0) {
+        diff = Integer.compare(rhs.id, o.rhs.id);
+      }
+
+      return diff;
+    }
+  }
+}
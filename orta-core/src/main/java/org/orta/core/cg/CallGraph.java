@@ -41,7 +41,9 @@ import org.orta.core.cg.impacts.ImpactUnit;
 import org.orta.core.type.klass.KlassMethod;
 
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 public interface CallGraph {
 
@@ -66,4 +68,15 @@ public interface CallGraph {
   void registerImplicitInvocation(KlassMethod invoked);
 
   Iterable<KlassMethod> getReachables(Set<KlassMethod> klassMethods);
+
+  /**
+   * Hands the methods reachable from each set of entries to {@code consumer}, as {@link #getReachables(Set)} would.
+   * Implementations may compute all the sets in one pass over the graph.
+   */
+  default <K> void forEachReachables(Map<K, ? extends Set<KlassMethod>> entries,
+                                     BiConsumer<K, Iterator<KlassMethod>> consumer) {
+    for (Map.Entry<K, ? extends Set<KlassMethod>> entry : entries.entrySet()) {
+      consumer.accept(entry.getKey(), getReachables(entry.getValue()).iterator());
+    }
+  }
 }
@@ -0,0 +1,206 @@
+package org.orta.core.cg;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import org.orta.core.cg.impacts.DynamicImpactResolver;
+import org.orta.core.cg.impacts.ImpactUnit;
+import org.orta.core.cg.impacts.ImpactVisitor;
+import org.orta.core.type.TypeHelper;
+import org.orta.core.type.klass.Klass;
+import org.orta.core.type.klass.KlassMethod;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The impacts of the static closure of each method, computed once and shared by all entry klasses. The closure of a
+ * method is the impacts in its body and in the bodies of the methods it invokes statically, including the static
+ * invocations themselves. The methods of a strongly connected component of static invocations have the same
+ * closure, so the components are found with Tarjan's algorithm and each of them is summarized once.
+ * <p>
+ * Summaries may be computed by several planning threads at once. A thread only reuses the summaries of completed
+ * components, so the threads may compute the same summary twice but never see a partial one.
+ */
+final class ClosureSummaries {
+  private final Map<KlassMethod, ImpactBitSet> summaries = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the impacts of the closures of the given methods.
+   */
+  ImpactBitSet of(Set<KlassMethod> methods) {
+    ImpactBitSet bits = new ImpactBitSet();
+    for (KlassMethod m : methods) {
+      bits = bits.or(of(m));
+    }
+
+    return bits;
+  }
+
+  ImpactBitSet of(KlassMethod method) {
+    ImpactBitSet summary = summaries.get(method);
+    if (summary != null) {
+      return summary;
+    }
+
+    Map<KlassMethod, Frame> frames = new HashMap<>();
+    Deque<Frame> path = new ArrayDeque<>();
+    Deque<Frame> component = new ArrayDeque<>();
+    path.push(enter(method, frames, component));
+    while (!path.isEmpty()) {
+      Frame frame = path.peek();
+      if (frame.next < frame.callees.size()) {
+        KlassMethod callee = frame.callees.get(frame.next++);
+        ImpactBitSet calleeSummary = summaries.get(callee);
+        Frame calleeFrame;
+        if (calleeSummary != null) {
+          frame.bits = frame.bits.or(calleeSummary);
+        } else if ((calleeFrame = frames.get(callee)) == null) {
+          path.push(enter(callee, frames, component));
+        } else if (calleeFrame.onComponent) {
+          frame.lowLink = Math.min(frame.lowLink, calleeFrame.index);
+        }
+        continue;
+      }
+
+      path.pop();
+      Frame caller = path.peek();
+      if (frame.lowLink == frame.index) {
+        summary = complete(frame, component);
+        if (caller != null) {
+          caller.bits = caller.bits.or(summary);
+        }
+      } else if (caller != null) {
+        caller.lowLink = Math.min(caller.lowLink, frame.lowLink);
+      }
+    }
+
+    return summaries.get(method);
+  }
+
+  private static Frame enter(KlassMethod method, Map<KlassMethod, Frame> frames, Deque<Frame> component) {
+    Frame frame = new Frame(method, frames.size());
+    for (ImpactUnit u : method.getBody()) {
+      u.apply(frame);
+    }
+
+    frames.put(method, frame);
+    component.push(frame);
+    return frame;
+  }
+
+  /**
+   * Pops the component rooted at {@code root}, and records the union of the impacts of its methods as their
+   * summary.
+   */
+  private ImpactBitSet complete(Frame root, Deque<Frame> component) {
+    List<Frame> members = new ArrayList<>();
+    ImpactBitSet bits = new ImpactBitSet();
+    Frame member;
+    do {
+      member = component.pop();
+      member.onComponent = false;
+      members.add(member);
+      bits = bits.or(member.bits);
+    } while (member != root);
+
+    bits.runOptimize();
+    for (Frame m : members) {
+      summaries.putIfAbsent(m.method, bits);
+    }
+
+    return bits;
+  }
+
+  /**
+   * A method being summarized. It records the impacts of its body and the methods its body reaches statically.
+   */
+  private static final class Frame implements ImpactVisitor {
+    private final KlassMethod method;
+    private final int index;
+    private final List<KlassMethod> callees = new ArrayList<>();
+    private ImpactBitSet bits = new ImpactBitSet();
+    private int lowLink;
+    private int next;
+    private boolean onComponent = true;
+
+    Frame(KlassMethod method, int index) {
+      this.method = method;
+      this.index = index;
+      this.lowLink = index;
+    }
+
+    @Override
+    public void instantiateType(ImpactUnit unit, Klass type) {
+      if (type.isConcrete()) {
+        bits.setObj(unit.getId());
+      } else {
+        callees.addAll(TypeHelper.resolveInvocableMethods(type));
+      }
+    }
+
+    @Override
+    public void registerInvoked(ImpactUnit unit, KlassMethod callee) {
+      bits.setStatic(unit.getId());
+      callees.add(callee);
+    }
+
+    @Override
+    public void addDynamicImpact(ImpactUnit u, DynamicImpactResolver dynamicInvocationImpact) {
+      bits.setDynamic(u.getId());
+    }
+
+    @Override
+    public void implicitInvoke(ImpactUnit unit, KlassMethod method) {
+      if (method != null) {
+        bits.setStatic(unit.getId());
+        callees.add(method);
+      }
+    }
+
+    @Override
+    public void acceptEntryMethod(KlassMethod m) {
+    }
+
+    @Override
+    public void acceptImpactUnit(ImpactUnit impactUnit) {
+    }
+  }
+}
@@ -0,0 +1,413 @@
+package org.orta.core.cg;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import org.orta.core.util.bitmap.RoaringBitSet;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The greedy maximal-overlap planner. It keeps connecting the pair of ordering keys that share the most impacts,
+ * either as a dominant key and its child or as two siblings under a new key, until no pair shares anything.
+ */
+final class GreedyPlanner {
+
+  private static final Logger logger = LoggerFactory.getLogger(GreedyPlanner.class);
+  private final ListMultimap<OrderingKey, EdgeType> availableOrderings = MultimapBuilder.hashKeys().linkedListValues().build();
+  private final Map<RoaringBitSet, OrderingKey> orderingKeys = new HashMap<>();
+  private final IndexedHeap<OrderingKey> candidates = new IndexedHeap<>();
+  private final IndexedHeap<OrderingKey> smallMaximums = new IndexedHeap<>();
+  private final Set<OrderingKey> maximums = new HashSet<>();
+  private final MinHashIndex maximumsIndex;
+  private long comparedPairs;
+  private long skippedPairs;
+
+  GreedyPlanner(ORTASetting setting) {
+    maximumsIndex = setting.isApproximatePlanning()
+            ? new MinHashIndex(setting.getCandidateBands(), setting.getCandidateRows()) : null;
+  }
+
+  private static RoaringBitSet mergeKlassBits(OrderingKey lhs, OrderingKey rhs) {
+    return lhs.getKlasses().union(rhs.getKlasses());
+  }
+
+  Collection<OrderingKey> plan(List<OrderingKey> entries) {
+    for (OrderingKey entry : entries) {
+      orderingKeys.put(entry.getKlasses(), entry);
+      addSmallMaximum(entry);
+    }
+
+    advanceMaximums();
+    findMaximals();
+    if (maximumsIndex != null) {
+      logger.info("compared pairs: {}, skipped pairs: {}", comparedPairs, skippedPairs);
+    }
+
+    List<OrderingKey> roots = smallMaximums.toList();
+    roots.addAll(maximums);
+    return roots;
+  }
+
+  private void addSmallMaximum(OrderingKey key) {
+    smallMaximums.add(key);
+  }
+
+  private void updateCandidates(OrderingKey source) {
+    if (!maximums.contains(source) && !smallMaximums.contains(source)) {
+      if (!candidates.isEmpty()) {
+        int srcScore = source.getPlaceholder().getScore();
+        int winnerScore = candidates.peek().getPlaceholder().getScore();
+        if (srcScore >= winnerScore) {
+          iterateMaximals(source);
+        } else {
+          addSmallMaximum(source);
+        }
+      } else {
+        iterateMaximals(source);
+      }
+    }
+  }
+
+  private OrderingKey getNextSmall() {
+    return smallMaximums.poll();
+  }
+
+  private OrderingKey peekNextSmall() {
+    return smallMaximums.peek();
+  }
+
+  private void advanceMaximums() {
+    while (candidates.isEmpty()) {
+      OrderingKey key = getNextSmall();
+      if (key == null) {
+        return;
+      }
+
+      updateCandidates(key);
+    }
+
+    OrderingKey source = peekNextSmall();
+    if (source == null) {
+      return;
+    }
+
+    int winnerScore = candidates.peek().getPlaceholder().getScore();
+    int threshold = source.getPlaceholder().getScore();
+    while (winnerScore <= threshold) {
+      source = getNextSmall();
+      if (source == null) {
+        return;
+      }
+
+      iterateMaximals(source);
+
+      OrderingKey next = peekNextSmall();
+      if (next == null) {
+        break;
+      }
+
+      threshold = next.getPlaceholder().getScore();
+      winnerScore = candidates.peek().getPlaceholder().getScore();
+    }
+  }
+
+  private void iterateMaximals(OrderingKey source) {
+    if (maximums.isEmpty()) {
+      addMaximum(source);
+      return;
+    }
+
+    int srcScore = source.getPlaceholder().getScore();
+    Iterator<OrderingKey> iterator = pairsOf(source);
+    while (iterator.hasNext()) {
+      OrderingKey target = iterator.next();
+      int targetScore = target.getPlaceholder().getScore();
+
+      OrderingKey computed = compute(source, target);
+      if (computed != null) {
+        int score = computed.getPlaceholder().getScore();
+
+        boolean isSourceDominant = srcScore == score;
+        boolean isTargetDominant = targetScore == score;
+
+        if (isTargetDominant && isSourceDominant) {
+          iterator.remove();
+//          Preconditions.checkState(!maximals.contains(computed) && !iteratedMaximals.contains(computed));
+//          Preconditions.checkState(!maximals.contains(source) && !iteratedMaximals.contains(source));
+//          Preconditions.checkState(!maximals.contains(target) && !iteratedMaximals.contains(target));
+          computed.makeDelegator(source);
+          computed.makeDelegator(target);
+          source = computed;
+          srcScore = score;
+        } else {
+          EdgeType edge;
+          if (isSourceDominant) {
+            edge = new SourceDominantType(source, target);
+          } else if (isTargetDominant) {
+            edge = new TargetDominantType(source, target);
+          } else {
+            edge = new SiblingsType(source, target);
+          }
+
+          List<EdgeType> edges = availableOrderings.get(computed);
+          if (edges.isEmpty()) {
+            candidates.add(computed);
+          }
+          edges.add(edge);
+        }
+      }
+    }
+
+    addMaximum(source);
+  }
+
+  private Iterator<OrderingKey> pairsOf(OrderingKey source) {
+    if (maximumsIndex == null) {
+      comparedPairs += maximums.size();
+      return maximums.iterator();
+    }
+
+    Set<OrderingKey> similar = maximumsIndex.similarTo(source);
+    comparedPairs += similar.size();
+    skippedPairs += maximums.size() - similar.size();
+    Iterator<OrderingKey> iterator = similar.iterator();
+    return new Iterator<OrderingKey>() {
+      private OrderingKey current;
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public OrderingKey next() {
+        current = iterator.next();
+        return current;
+      }
+
+      @Override
+      public void remove() {
+        iterator.remove();
+        removeMaximum(current);
+      }
+    };
+  }
+
+  private void addMaximum(OrderingKey key) {
+    maximums.add(key);
+    if (maximumsIndex != null) {
+      maximumsIndex.add(key);
+    }
+  }
+
+  private void removeMaximum(OrderingKey key) {
+    maximums.remove(key);
+    if (maximumsIndex != null) {
+      maximumsIndex.remove(key);
+    }
+  }
+
+  private OrderingKey merge(OrderingKey lhs, OrderingKey rhs) {
+    lhs = lhs.self();
+    rhs = rhs.self();
+    if (lhs == rhs) {
+      return lhs;
+    }
+    RoaringBitSet klasses = mergeKlassBits(lhs, rhs);
+    OrderingKey key = orderingKeys.get(klasses);
+    if (key == null) {
+      key = new OrderingKey(klasses, lhs);
+      orderingKeys.put(klasses, key);
+    }
+
+    if (key != lhs) {
+      discardFromMaximal(lhs);
+    }
+
+    if (key != rhs) {
+      discardFromMaximal(rhs);
+    }
+
+    key.makeDelegator(lhs);
+    key.makeDelegator(rhs);
+
+    return key;
+  }
+
+  private OrderingKey connectDominant(OrderingKey parent, OrderingKey dominant, OrderingKey child) {
+    if (child.hasParent()) {
+      return null;
+    }
+
+    OrderingKey computed = merge(parent, dominant);
+    connect(computed, child);
+    return computed;
+  }
+
+  private void discardFromMaximal(OrderingKey self) {
+    if (!smallMaximums.remove(self)) {
+      removeMaximum(self);
+    }
+  }
+
+  private OrderingKey compute(OrderingKey lhs, OrderingKey rhs) {
+    ImpactBitSet lhsph = lhs.getPlaceholder().getImpactBits();
+    ImpactBitSet rhsph = rhs.getPlaceholder().getImpactBits();
+    // Most pairs share nothing, so score them before allocating the merged key.
+    if (lhsph.andScore(rhsph) <= 0) {
+      return null;
+    }
+
+    RoaringBitSet newBits = mergeKlassBits(lhs, rhs);
+    OrderingKey key = orderingKeys.get(newBits);
+    if (key == null) {
+      key = new OrderingKey(newBits, new Placeholder(lhsph.and(rhsph)));
+      orderingKeys.put(newBits, key);
+    }
+
+    return key;
+  }
+
+  private void connect(OrderingKey parent, OrderingKey child) {
+    child = child.self();
+    discardFromMaximal(child);
+    child.setParent(parent);
+  }
+
+  private void findMaximals() {
+    while (!candidates.isEmpty()) {
+      OrderingKey node = candidates.poll();
+      boolean created = false;
+      List<EdgeType> edges = availableOrderings.removeAll(node);
+      node = node.self();
+      for (EdgeType edge : edges) {
+        OrderingKey next = edge.tryConnect(node);
+        if (next != null) {
+          created = true;
+          if (node != next) {
+            node = merge(node, next).self();
+          }
+        }
+      }
+
+      if (created) {
+        updateCandidates(node);
+      }
+
+      advanceMaximums();
+    }
+  }
+
+  private abstract static class EdgeType {
+    protected final OrderingKey source;
+    protected final OrderingKey target;
+
+    EdgeType(@NonNull OrderingKey source, OrderingKey target) {
+      this.source = source;
+      this.target = target;
+    }
+
+    abstract OrderingKey tryConnect(OrderingKey result);
+  }
+
+  private final class SourceDominantType extends EdgeType {
+
+    private SourceDominantType(OrderingKey source, OrderingKey target) {
+      super(source, target);
+    }
+
+    @Override
+    public OrderingKey tryConnect(OrderingKey result) {
+      return connectDominant(result, source, target);
+    }
+  }
+
+  private final class TargetDominantType extends EdgeType {
+
+    private TargetDominantType(OrderingKey source, OrderingKey target) {
+      super(source, target);
+    }
+
+    @Override
+    public OrderingKey tryConnect(OrderingKey parent) {
+      return connectDominant(parent, target, source);
+    }
+  }
+
+  private final class SiblingsType extends EdgeType {
+
+    private SiblingsType(OrderingKey source, OrderingKey target) {
+      super(source, target);
+    }
+
+    @Override
+    public OrderingKey tryConnect(OrderingKey parent) {
+      OrderingKey source = this.source.self();
+      OrderingKey target = this.target.self();
+      parent = parent.self();
+      if (source.hasParent() || target.hasParent()) {
+        return null;
+      }
+
+      RoaringBitSet klasses = mergeKlassBits(target, source);
+      OrderingKey key = orderingKeys.get(klasses);
+      if (key != parent) {
+        // klassbit is updated.
+        if (key == null) {
+          key = new OrderingKey(klasses, parent);
+          orderingKeys.put(klasses, key);
+        }
+        discardFromMaximal(parent);
+        key.makeDelegator(parent);
+      }
+
+      connect(key, source);
+      connect(key, target);
+      return key;
+    }
+  }
+}
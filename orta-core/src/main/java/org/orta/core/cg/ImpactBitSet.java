@@ -35,37 +35,34 @@ package org.orta.core.cg;
 
 
 
-import java.util.BitSet;
+import org.orta.core.util.bitmap.RoaringBitSet;
+
 import java.util.Objects;
 
 public class ImpactBitSet implements Comparable<ImpactBitSet> {
 
-  private final BitSet dynBit;
-  private final BitSet objBit;
-  private final BitSet staticBit;
+  private final RoaringBitSet dynBit;
+  private final RoaringBitSet objBit;
+  private final RoaringBitSet staticBit;
   private int cardinality = -1;
+  private ImpactWeights weights;
+  private int score = -1;
 
-  public ImpactBitSet(BitSet dyn, BitSet stat, BitSet obj) {
+  public ImpactBitSet(RoaringBitSet dyn, RoaringBitSet stat, RoaringBitSet obj) {
     this.dynBit = dyn;
     this.staticBit = stat;
     this.objBit = obj;
   }
 
   public ImpactBitSet() {
-    this.dynBit = new BitSet();
-    this.staticBit = new BitSet();
-    this.objBit = new BitSet();
-  }
-
-  private static BitSet and(BitSet a, BitSet b) {
-    BitSet n = (BitSet) a.clone();
-    n.and(b);
-    return n;
+    this.dynBit = new RoaringBitSet();
+    this.staticBit = new RoaringBitSet();
+    this.objBit = new RoaringBitSet();
   }
 
   @Override
   public int compareTo(ImpactBitSet o) {
-    return o.getCardinality() - getCardinality();
+    return Integer.compare(o.getCardinality(), getCardinality());
   }
 
   public int getCardinality() {
@@ -80,6 +77,38 @@ public class ImpactBitSet implements Comparable<ImpactBitSet> {
     return cardinality;
   }
 
+  /**
+   * @return the estimated work of the impacts if weights are set, and {@link #getCardinality()} otherwise.
+   */
+  public int getScore() {
+    if (weights == null) {
+      return getCardinality();
+    }
+
+    if (score == -1) {
+      long sum = objBit.sum(weights.obj);
+      if (sum != 0) {
+        sum += dynBit.sum(weights.dyn);
+      }
+      score = saturate(sum + staticBit.sum(weights.stat));
+    }
+
+    return score;
+  }
+
+  private static int saturate(long score) {
+    return (int) Math.min(score, Integer.MAX_VALUE);
+  }
+
+  ImpactWeights getWeights() {
+    return weights;
+  }
+
+  void setWeights(ImpactWeights weights) {
+    this.weights = weights;
+    this.score = -1;
+  }
+
   @Override
   public int hashCode() {
     return Objects.hash(objBit, dynBit, staticBit);
@@ -99,10 +128,67 @@ public class ImpactBitSet implements Comparable<ImpactBitSet> {
     return false;
   }
 
+  /**
+   * Computes {@code and(o).getCardinality()} without building the intersection.
+   */
+  public int andCardinality(ImpactBitSet o) {
+    int score = objBit.intersectionCardinality(o.objBit);
+    if (score != 0) {
+      score += dynBit.intersectionCardinality(o.dynBit);
+    }
+
+    return score + staticBit.intersectionCardinality(o.staticBit);
+  }
+
+  /**
+   * Computes {@code and(o).getScore()} without building the intersection.
+   */
+  public int andScore(ImpactBitSet o) {
+    if (weights == null) {
+      return andCardinality(o);
+    }
+
+    long sum = objBit.intersectionSum(o.objBit, weights.obj);
+    if (sum != 0) {
+      sum += dynBit.intersectionSum(o.dynBit, weights.dyn);
+    }
+
+    return saturate(sum + staticBit.intersectionSum(o.staticBit, weights.stat));
+  }
+
   public ImpactBitSet and(
           ImpactBitSet o) {
-    return new ImpactBitSet(and(o.dynBit, dynBit), and(o.staticBit, staticBit),
-            and(o.objBit, objBit));
+    ImpactBitSet result = new ImpactBitSet(o.dynBit.intersect(dynBit), o.staticBit.intersect(staticBit),
+            o.objBit.intersect(objBit));
+    result.weights = weights;
+    return result;
+  }
+
+  public ImpactBitSet or(
+          ImpactBitSet o) {
+    ImpactBitSet result = new ImpactBitSet(o.dynBit.union(dynBit), o.staticBit.union(staticBit),
+            o.objBit.union(objBit));
+    result.weights = weights;
+    return result;
+  }
+
+  /**
+   * @return true if all bits of {@code o} are set in this, regardless of whether they are counted.
+   */
+  boolean contains(ImpactBitSet o) {
+    return o.objBit.intersectionCardinality(objBit) == o.objBit.cardinality()
+            && o.dynBit.intersectionCardinality(dynBit) == o.dynBit.cardinality()
+            && o.staticBit.intersectionCardinality(staticBit) == o.staticBit.cardinality();
+  }
+
+  /**
+   * Compresses the bits once all impacts are set.
+   */
+  ImpactBitSet runOptimize() {
+    dynBit.runOptimize();
+    staticBit.runOptimize();
+    objBit.runOptimize();
+    return this;
   }
 
   public void setObj(int bit) {
@@ -117,15 +203,15 @@ public class ImpactBitSet implements Comparable<ImpactBitSet> {
     dynBit.set(bit);
   }
 
-  public BitSet obj() {
+  public RoaringBitSet obj() {
     return objBit;
   }
 
-  public BitSet stat() {
+  public RoaringBitSet stat() {
     return staticBit;
   }
 
-  public BitSet dyn() {
+  public RoaringBitSet dyn() {
     return dynBit;
   }
 }
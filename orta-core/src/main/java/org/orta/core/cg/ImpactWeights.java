@@ -0,0 +1,140 @@
+package org.orta.core.cg;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import org.orta.core.cg.impacts.DynamicImpactResolver;
+import org.orta.core.cg.impacts.ImpactTable;
+import org.orta.core.cg.impacts.ImpactUnit;
+import org.orta.core.cg.impacts.ImpactVisitor;
+import org.orta.core.type.klass.Klass;
+import org.orta.core.type.klass.KlassMethod;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Estimated worklist work of each impact in an {@link ORTACallGraphBuilder.ImpactMap}, indexed by the impact
+ * ids. A static invocation costs the body of its callee, an instantiated type costs the dynamic call sites it
+ * can be dispatched from, and a dynamic call site costs the instantiated types it can be dispatched to.
+ */
+final class ImpactWeights {
+
+  final int[] obj;
+  final int[] stat;
+  final int[] dyn;
+
+  private ImpactWeights(int[] obj, int[] stat, int[] dyn) {
+    this.obj = obj;
+    this.stat = stat;
+    this.dyn = dyn;
+  }
+
+  static ImpactWeights estimate(ORTACallGraphBuilder.ImpactMap impactMap) {
+    ImpactTable objMap = impactMap.objMap();
+    ImpactTable staticMap = impactMap.staticMap();
+    ImpactTable dynMap = impactMap.dynMap();
+    ImpactBitSet interned = impactMap.interned();
+
+    Map<Klass, Integer> instantiatedSubtypes = new HashMap<>();
+    interned.obj().forEach(id -> {
+      for (Klass type : objMap.get(id).getType().getSupertypes()) {
+        instantiatedSubtypes.merge(type, 1, Integer::sum);
+      }
+    });
+
+    Map<Klass, Integer> callSites = new HashMap<>();
+    int[] dyn = new int[dynMap.size()];
+    interned.dyn().forEach(id -> {
+      Klass receiver = dynMap.get(id).getType();
+      callSites.merge(receiver, 1, Integer::sum);
+      dyn[id] = 1 + instantiatedSubtypes.getOrDefault(receiver, 0);
+    });
+
+    int[] obj = new int[objMap.size()];
+    interned.obj().forEach(id -> {
+      int weight = 1;
+      for (Klass type : objMap.get(id).getType().getSupertypes()) {
+        weight += callSites.getOrDefault(type, 0);
+      }
+
+      obj[id] = weight;
+    });
+
+    CalleeVisitor visitor = new CalleeVisitor();
+    int[] stat = new int[staticMap.size()];
+    interned.stat().forEach(id -> {
+      KlassMethod callee = visitor.resolve(staticMap.get(id));
+      stat[id] = 1 + (callee == null ? 0 : callee.getBody().size());
+    });
+
+    return new ImpactWeights(obj, stat, dyn);
+  }
+
+  private static final class CalleeVisitor implements ImpactVisitor {
+    private KlassMethod callee;
+
+    KlassMethod resolve(ImpactUnit unit) {
+      callee = null;
+      unit.apply(this);
+      return callee;
+    }
+
+    @Override
+    public void instantiateType(ImpactUnit unit, Klass type) {
+    }
+
+    @Override
+    public void registerInvoked(ImpactUnit unit, KlassMethod callee) {
+      this.callee = callee;
+    }
+
+    @Override
+    public void addDynamicImpact(ImpactUnit u, DynamicImpactResolver dynamicInvocationImpact) {
+    }
+
+    @Override
+    public void implicitInvoke(ImpactUnit unit, KlassMethod method) {
+      this.callee = method;
+    }
+
+    @Override
+    public void acceptEntryMethod(KlassMethod m) {
+    }
+
+    @Override
+    public void acceptImpactUnit(ImpactUnit impactUnit) {
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package org.orta.core.cg;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binary min-heap that knows the position of each element, so that an element can be removed in place instead
+ * of being left in the heap and skipped later. Each element is held at most once.
+ */
+final class IndexedHeap<E extends Comparable<? super E>> {
+  private final List<E> heap = new ArrayList<>();
+  private final Map<E, Integer> positions = new HashMap<>();
+
+  boolean isEmpty() {
+    return heap.isEmpty();
+  }
+
+  int size() {
+    return heap.size();
+  }
+
+  boolean contains(E element) {
+    return positions.containsKey(element);
+  }
+
+  /**
+   * @return false if the element is already in the heap.
+   */
+  boolean add(E element) {
+    if (positions.containsKey(element)) {
+      return false;
+    }
+
+    heap.add(element);
+    positions.put(element, heap.size() - 1);
+    siftUp(heap.size() - 1);
+    return true;
+  }
+
+  E peek() {
+    return heap.isEmpty() ? null : heap.get(0);
+  }
+
+  E poll() {
+    if (heap.isEmpty()) {
+      return null;
+    }
+
+    E head = heap.get(0);
+    removeAt(0);
+    return head;
+  }
+
+  boolean remove(E element) {
+    Integer pos = positions.get(element);
+    if (pos == null) {
+      return false;
+    }
+
+    removeAt(pos);
+    return true;
+  }
+
+  List<E> toList() {
+    return new ArrayList<>(heap);
+  }
+
+  private void removeAt(int pos) {
+    E removed = heap.get(pos);
+    positions.remove(removed);
+    E last = heap.remove(heap.size() - 1);
+    if (pos < heap.size()) {
+      set(pos, last);
+      if (siftUp(pos) == pos) {
+        siftDown(pos);
+      }
+    }
+  }
+
+  private int siftUp(int pos) {
+    E element = heap.get(pos);
+    while (pos > 0) {
+      int parent = (pos - 1) >>> 1;
+      E parentElement = heap.get(parent);
+      if (element.compareTo(parentElement) >= 0) {
+        break;
+      }
+
+      set(pos, parentElement);
+      pos = parent;
+    }
+
+    set(pos, element);
+    return pos;
+  }
+
+  private void siftDown(int pos) {
+    E element = heap.get(pos);
+    int size = heap.size();
+    int half = size >>> 1;
+    while (pos < half) {
+      int child = 2 * pos + 1;
+      E childElement = heap.get(child);
+      int right = child + 1;
+      if (right < size && childElement.compareTo(heap.get(right)) > 0) {
+        child = right;
+        childElement = heap.get(child);
+      }
+
+      if (element.compareTo(childElement) <= 0) {
+        break;
+      }
+
+      set(pos, childElement);
+      pos = child;
+    }
+
+    set(pos, element);
+  }
+
+  private void set(int pos, E element) {
+    heap.set(pos, element);
+    positions.put(element, pos);
+  }
+}
@@ -0,0 +1,180 @@
+package org.orta.core.cg;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import org.orta.core.util.bitmap.RoaringBitSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Locality-sensitive index of ordering keys. Each key gets a MinHash signature of its impact bits, split into
+ * bands of rows; two keys are proposed as a pair if any of their bands are identical. The probability of that
+ * grows with the Jaccard similarity of the impacts, so keys that share little are rarely compared.
+ */
+class MinHashIndex {
+
+  private static final long SEED = 0x4f525441L;
+
+  private final int bands;
+  private final int rows;
+  private final long[] multipliers;
+  private final long[] increments;
+  private final Map<OrderingKey, long[]> bandHashes = new HashMap<>();
+  private final List<Map<Long, Set<OrderingKey>>> buckets;
+
+  MinHashIndex(int bands, int rows) {
+    this.bands = bands;
+    this.rows = rows;
+    int size = bands * rows;
+    this.multipliers = new long[size];
+    this.increments = new long[size];
+    Random random = new Random(SEED);
+    for (int i = 0; i < size; i++) {
+      multipliers[i] = random.nextLong() | 1;
+      increments[i] = random.nextLong();
+    }
+
+    this.buckets = new ArrayList<>(bands);
+    for (int i = 0; i < bands; i++) {
+      buckets.add(new HashMap<>());
+    }
+  }
+
+  // Finalizer of MurmurHash3.
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private void update(long[] signature, RoaringBitSet bits, long kind) {
+    bits.forEach(x -> {
+      long element = kind << 32 | x;
+      for (int i = 0; i < signature.length; i++) {
+        long h = mix(element * multipliers[i] + increments[i]);
+        if (h < signature[i]) {
+          signature[i] = h;
+        }
+      }
+    });
+  }
+
+  private long[] computeBandHashes(ImpactBitSet impacts) {
+    long[] signature = new long[bands * rows];
+    Arrays.fill(signature, Long.MAX_VALUE);
+    update(signature, impacts.obj(), 0);
+    update(signature, impacts.stat(), 1);
+    update(signature, impacts.dyn(), 2);
+
+    long[] result = new long[bands];
+    for (int band = 0; band < bands; band++) {
+      long h = band;
+      for (int row = 0; row < rows; row++) {
+        h = mix(h * 31 + signature[band * rows + row]);
+      }
+
+      result[band] = h;
+    }
+
+    return result;
+  }
+
+  void add(OrderingKey key) {
+    ImpactBitSet impacts = key.getPlaceholder().getImpactBits();
+    if (impacts.getCardinality() == 0) {
+      // such keys never form a pair with a positive score.
+      return;
+    }
+
+    long[] hashes = computeBandHashes(impacts);
+    bandHashes.put(key, hashes);
+    for (int band = 0; band < bands; band++) {
+      buckets.get(band).computeIfAbsent(hashes[band], h -> new HashSet<>()).add(key);
+    }
+  }
+
+  void remove(OrderingKey key) {
+    long[] hashes = bandHashes.remove(key);
+    if (hashes == null) {
+      return;
+    }
+
+    for (int band = 0; band < bands; band++) {
+      Map<Long, Set<OrderingKey>> bucket = buckets.get(band);
+      Set<OrderingKey> keys = bucket.get(hashes[band]);
+      keys.remove(key);
+      if (keys.isEmpty()) {
+        bucket.remove(hashes[band]);
+      }
+    }
+  }
+
+  /**
+   * @return the indexed keys that share at least one band with {@code source}.
+   */
+  Set<OrderingKey> similarTo(OrderingKey source) {
+    ImpactBitSet impacts = source.getPlaceholder().getImpactBits();
+    Set<OrderingKey> result = new LinkedHashSet<>();
+    if (impacts.getCardinality() == 0) {
+      return result;
+    }
+
+    long[] hashes = bandHashes.get(source);
+    if (hashes == null) {
+      hashes = computeBandHashes(impacts);
+    }
+
+    for (int band = 0; band < bands; band++) {
+      Set<OrderingKey> keys = buckets.get(band).get(hashes[band]);
+      if (keys != null) {
+        result.addAll(keys);
+      }
+    }
+
+    result.remove(source);
+    return result;
+  }
+}
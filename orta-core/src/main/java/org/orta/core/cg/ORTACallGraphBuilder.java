@@ -37,611 +37,605 @@ package org.orta.core.cg;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ListMultimap;
-import com.google.common.collect.MultimapBuilder;
-import org.orta.core.cg.impacts.DynamicImpactResolver;
+import org.orta.core.cg.impacts.ImpactFactory;
+import org.orta.core.cg.impacts.ImpactTable;
 import org.orta.core.cg.impacts.ImpactUnit;
-import org.orta.core.cg.impacts.ImpactVisitor;
+import org.orta.core.cg.rta.LayerSnapshot;
 import org.orta.core.cg.rta.RTA;
 import org.orta.core.type.AnalysisSession;
 import org.orta.core.type.TypeHelper;
 import org.orta.core.type.klass.Klass;
 import org.orta.core.type.klass.KlassMethod;
-import org.checkerframework.checker.nullness.qual.NonNull;
+import org.orta.core.util.bitmap.RoaringBitSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
 
 public class ORTACallGraphBuilder {
 
   private static final Logger logger = LoggerFactory.getLogger(ORTACallGraphBuilder.class);
-  private final ListMultimap<OrderingKey, EdgeType> availableOrderings = MultimapBuilder.hashKeys().linkedListValues().build();
-  private final Map<BitSet, OrderingKey> orderingKeys = new HashMap<>();
-  private final PriorityQueue<OrderingKey> candidates = new PriorityQueue<>();
-  private final ImpactMap impactMap = new ImpactMap();
-  private final PriorityQueue<OrderingKey> smallMaximums = new PriorityQueue<>();
-  private final Set<OrderingKey> smallMaximumsSet = new HashSet<>();
-  private final Set<OrderingKey> maximums = new HashSet<>();
-
-  private ORTACallGraphBuilder() {
+  private final ImpactMap impactMap;
+  private final List<OrderingKey> entries = new ArrayList<>();
+  private final Map<OrderingKey, PersistedPlan.Node> previousNodes = new HashMap<>();
+  private final Map<OrderingKey, LayerSnapshot> layers = new ConcurrentHashMap<>();
+  private final Set<OrderingKey> restoredKeys = ConcurrentHashMap.newKeySet();
+  private final Map<OrderingKey, Integer> subtreeSizes = new HashMap<>();
+  private final Map<Klass, ImpactBitSet> entryImpacts = new HashMap<>();
+  private final ORTASetting setting;
+  private Collection<OrderingKey> roots;
+
+  private ORTACallGraphBuilder(ImpactFactory factory, ORTASetting setting) {
+    this.impactMap = new ImpactMap(factory);
+    this.setting = setting;
   }
 
-  private static BitSet mergeKlassBits(OrderingKey lhs, OrderingKey rhs) {
-    BitSet newBits = (BitSet) lhs.getKlasses().clone();
-    newBits.or(rhs.getKlasses());
-    return newBits;
+  public static ORTACallGraphBuilder plan(Set<Klass> entryKlasses) {
+    return plan(entryKlasses, new ORTASetting());
   }
 
-  public static ORTACallGraphBuilder plan(Set<Klass> entryKlasses) {
+  public static ORTACallGraphBuilder plan(Set<Klass> entryKlasses, ORTASetting setting) {
+    ORTACallGraphBuilder builder = flatten(entryKlasses, setting);
+    builder.planRoots();
+    return builder;
+  }
+
+  private static ORTACallGraphBuilder flatten(Set<Klass> entryKlasses, ORTASetting setting) {
     Preconditions.checkState(entryKlasses.size() > 2);
-    long t = System.currentTimeMillis();
-    ORTACallGraphBuilder builder = new ORTACallGraphBuilder();
+    ImpactFactory factory = entryKlasses.iterator().next().getSession().getImpactFactory();
+    ORTACallGraphBuilder builder = new ORTACallGraphBuilder(factory, setting);
 
     long k = System.currentTimeMillis();
-    int count = 0;
-    for (Klass klass : entryKlasses) {
-      builder.add(count++, klass);
+    if (setting.isParallelPlanning()) {
+      builder.addAll(entryKlasses, setting.getPlanningParallelism());
+    } else {
+      int count = 0;
+      for (Klass klass : entryKlasses) {
+        builder.add(count++, klass);
+      }
     }
     logger.info("add(): {}", (System.currentTimeMillis() - k) / 1000.0);
 
-    builder.advanceMaximums();
-    builder.findMaximals();
-    logger.info("plan(): {}", (System.currentTimeMillis() - t) / 1000.0);
-    return builder;
-  }
-
-  public static Map<String, CallGraph> build(AnalysisSession sess, Set<Klass> entryKlasses) {
-    if (entryKlasses.size() <= 2) {
-      Map<String, CallGraph> result = new HashMap<>();
-      RTA rta = RTA.get();
-      for (Klass k : entryKlasses) {
-        result.put(k.toString(), rta.createCallGraph(sess, ImmutableSet.of(k), TypeHelper.resolveInvocableMethods(k)));
+    if (setting.isWorkWeightedPlanning()) {
+      ImpactWeights weights = ImpactWeights.estimate(builder.impactMap);
+      for (OrderingKey entry : builder.entries) {
+        entry.getPlaceholder().getImpactBits().setWeights(weights);
       }
-
-      return result;
     }
-
-    return plan(entryKlasses).constructGraphs(sess);
-  }
-
-  public static void validate(AnalysisSession sess, Set<Klass> klasses) {
-    plan(klasses).validate(sess);
-  }
-
-  private void add(int id, Klass klass) {
-    ImpactBitSet impactBitSet = new ImpactBitSet();
-    Set<KlassMethod> methods = TypeHelper.resolveInvocableMethods(klass);
-    impactMap.set(methods, impactBitSet);
-
-    BitSet klasses = new BitSet();
-    klasses.set(id);
-    OrderingKey node = new OrderingKey(klasses, new Placeholder(impactBitSet, new InitialPlaceholder(klass, methods)));
-    orderingKeys.put(klasses, node);
-    addSmallMaximum(node);
-  }
-
-  private void addSmallMaximum(OrderingKey key) {
-    smallMaximums.add(key);
-    smallMaximumsSet.add(key);
+    return builder;
   }
 
-  private void updateCandidates(OrderingKey source) {
-    if (!maximums.contains(source) && !smallMaximumsSet.contains(source)) {
-      if (!candidates.isEmpty()) {
-        int srcScore = source.getPlaceholder().getScore();
-        int winnerScore = candidates.peek().getPlaceholder().getScore();
-        if (srcScore >= winnerScore) {
-          iterateMaximals(source);
-        } else {
-          addSmallMaximum(source);
-        }
-      } else {
-        iterateMaximals(source);
-      }
+  private void planRoots() {
+    long t = System.currentTimeMillis();
+    PersistedPlan previous = setting.getPreviousPlan();
+    if (previous != null) {
+      roots = previous.replan(entries, impactMap, setting, previousNodes);
+    } else {
+      roots = setting.getPlanningStrategy().plan(entries, setting);
     }
+    logger.info("plan(): {}", (System.currentTimeMillis() - t) / 1000.0);
   }
 
-  private OrderingKey getNextSmall() {
-    while (!smallMaximums.isEmpty()) {
-      OrderingKey key = smallMaximums.poll();
-      if (smallMaximumsSet.remove(key)) {
-        return key;
-      }
+  /**
+   * Bounds the shared ratio of any plan of the entry klasses before planning. Every impact of an entry klass is
+   * analyzed at least once, so the work of a plan is at least the score of the union of the entry impacts.
+   */
+  private double maxSharedRatio() {
+    long separateCost = 0;
+    ImpactBitSet union = new ImpactBitSet();
+    for (OrderingKey entry : entries) {
+      ImpactBitSet bits = entry.getPlaceholder().getImpactBits();
+      separateCost += bits.getScore();
+      union = bits.or(union);
     }
 
-    return null;
+    return separateCost == 0 ? 0 : 1 - (double) union.getScore() / separateCost;
   }
 
-  private OrderingKey peekNextSmall() {
-    while (!smallMaximums.isEmpty()) {
-      OrderingKey key = smallMaximums.peek();
-      if (smallMaximumsSet.contains(key)) {
-        return key;
-      }
-      smallMaximums.remove();
-    }
-
-    return null;
+  public static Map<String, CallGraph> build(AnalysisSession sess, Set<Klass> entryKlasses) {
+    return build(sess, entryKlasses, new ORTASetting());
   }
 
-  private void advanceMaximums() {
-    while (candidates.isEmpty()) {
-      OrderingKey key = getNextSmall();
-      if (key == null) {
-        return;
-      }
-
-      updateCandidates(key);
-    }
+  public static Map<String, CallGraph> build(AnalysisSession sess, Set<Klass> entryKlasses,
+                                             ORTASetting setting) {
+    Map<String, CallGraph> result = new HashMap<>();
+    build(sess, entryKlasses, setting, result::put);
+    return result;
+  }
 
-    OrderingKey source = peekNextSmall();
-    if (source == null) {
+  /**
+   * Constructs the graphs like the other build(), but hands each graph of an entry klass to {@code consumer} as soon
+   * as it is complete. The builder keeps a shared layer only while some of its descendants are not constructed
+   * yet, so the graphs that are not kept by the consumer are released during the construction. The consumer is
+   * called by one thread at a time even if the construction is parallel.
+   */
+  public static void build(AnalysisSession sess, Set<Klass> entryKlasses, ORTASetting setting,
+                           BiConsumer<String, CallGraph> consumer) {
+    if (entryKlasses.size() <= 2) {
+      buildSeparately(sess, entryKlasses, algorithm(setting), consumer);
       return;
     }
 
-    int winnerScore = candidates.peek().getPlaceholder().getScore();
-    int threshold = source.getPlaceholder().getScore();
-    while (winnerScore <= threshold) {
-      source = getNextSmall();
-      if (source == null) {
+    ORTACallGraphBuilder builder = flatten(entryKlasses, setting);
+    if (setting.getMinSharedRatio() > 0) {
+      double maxSharedRatio = builder.maxSharedRatio();
+      logger.info("maxSharedRatio(): {}", maxSharedRatio);
+      if (maxSharedRatio < setting.getMinSharedRatio()) {
+        logger.info("The entry klasses share too little, so RTA is run separately for each entry klass");
+        buildSeparately(sess, entryKlasses, algorithm(setting), consumer);
         return;
       }
-
-      iterateMaximals(source);
-
-      OrderingKey next = peekNextSmall();
-      if (next == null) {
-        break;
-      }
-
-      threshold = next.getPlaceholder().getScore();
-      winnerScore = candidates.peek().getPlaceholder().getScore();
     }
-  }
-
-  private void iterateMaximals(OrderingKey source) {
-    if (maximums.isEmpty()) {
-      maximums.add(source);
-      return;
-    }
-
-    int srcScore = source.getPlaceholder().getScore();
-    Iterator<OrderingKey> iterator = maximums.iterator();
-    OrderingKey target = iterator.next();
-    while (true) {
-      int targetScore = target.getPlaceholder().getScore();
-
-      OrderingKey computed = compute(source, target);
-      if (computed != null) {
-        int score = computed.getPlaceholder().getScore();
-
-        boolean isSourceDominant = srcScore == score;
-        boolean isTargetDominant = targetScore == score;
-
-        if (isTargetDominant && isSourceDominant) {
-          iterator.remove();
-//          Preconditions.checkState(!maximals.contains(computed) && !iteratedMaximals.contains(computed));
-//          Preconditions.checkState(!maximals.contains(source) && !iteratedMaximals.contains(source));
-//          Preconditions.checkState(!maximals.contains(target) && !iteratedMaximals.contains(target));
-          computed.makeDelegator(source);
-          computed.makeDelegator(target);
-          source = computed;
-          srcScore = score;
-        } else {
-          EdgeType edge;
-          if (isSourceDominant) {
-            edge = new SourceDominantType(source, target);
-          } else if (isTargetDominant) {
-            edge = new TargetDominantType(source, target);
-          } else {
-            edge = new SiblingsType(source, target);
-          }
-
-          List<EdgeType> edges = availableOrderings.get(computed);
-          if (edges.isEmpty()) {
-            candidates.add(computed);
-          }
-          edges.add(edge);
-        }
-      }
 
-      if (iterator.hasNext()) {
-        target = iterator.next();
-      } else {
-        break;
+    builder.planRoots();
+    if (setting.getMinSharedRatio() > 0) {
+      PlanEstimate estimate = builder.estimate();
+      logger.info("estimate(): {}", estimate);
+      if (estimate.getSharedRatio() < setting.getMinSharedRatio()) {
+        logger.info("The plan shares too little, so RTA is run separately for each entry klass");
+        buildSeparately(sess, entryKlasses, algorithm(setting), consumer);
+        return;
       }
     }
 
-    maximums.add(source);
-  }
-
-  private OrderingKey merge(OrderingKey lhs, OrderingKey rhs) {
-    lhs = lhs.self();
-    rhs = rhs.self();
-    if (lhs == rhs) {
-      return lhs;
-    }
-    BitSet klasses = mergeKlassBits(lhs, rhs);
-    OrderingKey key = orderingKeys.get(klasses);
-    if (key == null) {
-      key = new OrderingKey(klasses, lhs);
-      orderingKeys.put(klasses, key);
+    for (OrderingKey root : builder.roots) {
+      builder.countSubtree(root);
     }
 
-    if (key != lhs) {
-      discardFromMaximal(lhs);
+    if (setting.isParallelConstruction()) {
+      builder.constructGraphs(sess, setting.getConstructionParallelism(), consumer);
+    } else {
+      builder.constructGraphs(sess, consumer);
     }
 
-    if (key != rhs) {
-      discardFromMaximal(rhs);
+    if (setting.getPreviousPlan() != null) {
+      logger.info("Restored {} shared layers", builder.restoredKeys.size());
     }
 
-    key.makeDelegator(lhs);
-    key.makeDelegator(rhs);
+    if (setting.getPlanRecorder() != null) {
+      setting.getPlanRecorder().accept(PersistedPlan.capture(builder.roots, builder.layers));
+    }
+  }
 
-    return key;
+  private static RTA algorithm(ORTASetting setting) {
+    return setting.isReachabilityOnly() ? RTA.reachabilityOnly() : RTA.get();
   }
 
-  private OrderingKey connectDominant(OrderingKey parent, OrderingKey dominant, OrderingKey child) {
-    if (child.hasParent()) {
-      return null;
+  private static void buildSeparately(AnalysisSession sess, Set<Klass> entryKlasses, RTA rta,
+                                      BiConsumer<String, CallGraph> consumer) {
+    for (Klass k : entryKlasses) {
+      consumer.accept(k.toString(), rta.createCallGraph(sess, ImmutableSet.of(k), TypeHelper.resolveInvocableMethods(k)));
     }
-
-    OrderingKey computed = merge(parent, dominant);
-    connect(computed, child);
-    return computed;
   }
 
-  private void discardFromMaximal(OrderingKey self) {
-    if (!smallMaximumsSet.remove(self)) {
-      maximums.remove(self);
-    }
+  private void add(int id, Klass klass) {
+    Set<KlassMethod> methods = TypeHelper.resolveInvocableMethods(klass);
+    ImpactBitSet impactBitSet = impactMap.flatten(methods);
+    addNode(id, klass, methods, impactBitSet);
   }
 
-  private OrderingKey compute(OrderingKey lhs, OrderingKey rhs) {
-    BitSet newBits = mergeKlassBits(lhs, rhs);
-    OrderingKey key = orderingKeys.get(newBits);
-    if (key == null) {
-      ImpactBitSet lhsph = lhs.getPlaceholder().getImpactBits();
-      ImpactBitSet rhsph = rhs.getPlaceholder().getImpactBits();
-      key = new OrderingKey(newBits, new Placeholder(lhsph.and(rhsph)));
-      orderingKeys.put(newBits, key);
+  private void addAll(Set<Klass> entryKlasses, int parallelism) {
+    Klass[] klasses = entryKlasses.toArray(new Klass[0]);
+    FlattenedImpacts[] flattened = new FlattenedImpacts[klasses.length];
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new FlattenTask(impactMap.summaries, klasses, flattened, 0, klasses.length));
+    } finally {
+      pool.shutdown();
     }
 
-    int score = key.getPlaceholder().getScore();
-    if (score <= 0) {
-      return null;
+    for (int id = 0; id < flattened.length; id++) {
+      FlattenedImpacts impacts = flattened[id];
+      impactMap.intern(impacts.bits);
+      addNode(id, impacts.klass, impacts.methods, impacts.bits);
     }
-
-    return key;
   }
 
-  private void connect(OrderingKey parent, OrderingKey child) {
-    child = child.self();
-    discardFromMaximal(child);
-    child.setParent(parent);
+  private void addNode(int id, Klass klass, Set<KlassMethod> methods, ImpactBitSet impactBitSet) {
+    entryImpacts.put(klass, impactBitSet);
+    RoaringBitSet klasses = new RoaringBitSet().set(id);
+    OrderingKey node = new OrderingKey(klasses,
+            new Placeholder(impactBitSet.runOptimize(), new InitialPlaceholder(klass, methods)));
+    entries.add(node);
   }
 
-  private void validate(AnalysisSession sess) {
-    OrderedCallGraphAlgorithm algorithm = RTA.get();
-    Map<String, CallGraph> result = new HashMap<>();
-    Deque<OrderingKey> analysisQueue = new LinkedList<>();
-    Map<BitSet, OrderedCallGraph> intermediateGraphs = new HashMap<>();
-    for (OrderingKey key : smallMaximums) {
-      analysisQueue.addLast(key);
-    }
+  /**
+   * Estimates the work of constructing the planned graphs against running RTA separately for each entry klass.
+   */
+  public PlanEstimate estimate() {
+    long separateCost = 0;
+    long orderedCost = 0;
+    int sharedLayers = 0;
+    Deque<OrderingKey> queue = new ArrayDeque<>(roots);
+    while (!queue.isEmpty()) {
+      OrderingKey node = queue.removeFirst();
+      OrderingKey parent = node.getParent();
+      int parentScore = parent == null ? 0 : parent.getPlaceholder().getScore();
+      int score = node.getPlaceholder().getScore();
+      Collection<InitialPlaceholder> initials = node.getPlaceholder().getInitials();
+      int base = parentScore;
+      if (!node.getChildren().isEmpty() || initials.size() > 1) {
+        sharedLayers++;
+        orderedCost += score - parentScore;
+        base = score;
+      }
 
-    for (OrderingKey key : maximums) {
-      analysisQueue.addLast(key);
+      for (InitialPlaceholder iph : initials) {
+        int entryScore = entryImpacts.get(iph.getKlass()).getScore();
+        separateCost += entryScore;
+        orderedCost += Math.max(entryScore - base, 0);
+      }
+
+      queue.addAll(node.getChildren());
     }
 
-    while (!analysisQueue.isEmpty()) {
-      OrderingKey node = analysisQueue.removeFirst();
-      OrderingKey parent = node.getParent();
-      OrderedCallGraph accCG;
-      Placeholder ph = node.getPlaceholder();
-      Collection<InitialPlaceholder> initials = ph.getInitials();
-      Collection<OrderingKey> children = node.getChildren();
-      if (!children.isEmpty() || initials.size() > 1) {
-        if (!children.isEmpty()) {
-          if (parent == null) {
-            accCG = algorithm.createOrderedCallGraph(sess);
-          } else {
-            OrderedCallGraph prev = intermediateGraphs.get(parent.getKlasses());
-            accCG = algorithm.createOrderedCallGraph(prev, sess.getFakeCaller());
-          }
+    return new PlanEstimate(entries.size(), sharedLayers, separateCost, orderedCost);
+  }
 
-          Preconditions.checkState(intermediateGraphs.put(node.getKlasses(), accCG) == null);
-        } else if (parent == null) {
-          accCG = algorithm.createOrderedCallGraph(sess);
-        } else {
-          OrderedCallGraph prev = intermediateGraphs.get(parent.getKlasses());
-          accCG = algorithm.createOrderedCallGraph(prev, sess.getFakeCaller());
-        }
 
-        for (InitialPlaceholder iph : initials) {
-          OrderedCallGraph finalCG = algorithm.createOrderedCallGraph(accCG, sess.getFakeCaller());
-          Klass klass = iph.getKlass();
-          result.put(klass.getTypeName(), finalCG);
-        }
-      } else {
-        if (parent != null) {
-          OrderedCallGraph prevCG = intermediateGraphs.get(parent.getKlasses());
-          accCG = algorithm.createOrderedCallGraph(prevCG, sess.getFakeCaller());
-        } else {
-          accCG = algorithm.createOrderedCallGraph(sess);
-        }
+  /**
+   * Constructs the trees depth-first. A pending key holds the graph of its parent, so the graph of a shared key is
+   * released once all of its children are taken from the stack, and at most the layers of one path from a root are
+   * held with their pending children.
+   */
+  private void constructGraphs(AnalysisSession sess, BiConsumer<String, CallGraph> consumer) {
+    long t = System.currentTimeMillis();
+    Set<String> delivered = new HashSet<>();
+    Deque<PendingKey> stack = new ArrayDeque<>();
+    for (OrderingKey key : roots) {
+      stack.push(new PendingKey(key, null));
+    }
 
-        for (InitialPlaceholder iph : initials) {
-          Klass klass = iph.getKlass();
-          result.put(klass.getTypeName(), accCG);
+    while (!stack.isEmpty()) {
+      PendingKey pending = stack.pop();
+      OrderedCallGraph accCG = construct(sess, pending.node, pending.prevCG, (name, cg) -> {
+        Preconditions.checkState(delivered.add(name));
+        consumer.accept(name, cg);
+      });
+      if (accCG != null) {
+        // pushes the largest subtree last so that it is constructed first
+        List<OrderingKey> children = childrenBySize(pending.node);
+        for (int i = children.size() - 1; i >= 0; i--) {
+          stack.push(new PendingKey(children.get(i), accCG));
         }
       }
-
-      for (OrderingKey child : node.getChildren()) {
-        analysisQueue.addLast(child);
-      }
     }
+
+    logger.info("constructGraph(): {}", (System.currentTimeMillis() - t) / 1000.0);
   }
 
-  private Map<String, CallGraph> constructGraphs(AnalysisSession sess) {
+  private void constructGraphs(AnalysisSession sess, int parallelism, BiConsumer<String, CallGraph> consumer) {
     long t = System.currentTimeMillis();
-    RTA algorithm = RTA.get();
-    Map<String, CallGraph> result = new HashMap<>();
-    Deque<OrderingKey> analysisQueue = new LinkedList<>();
-    Map<BitSet, OrderedCallGraph> intermediateGraphs = new HashMap<>();
-    for (OrderingKey key : smallMaximums) {
-      analysisQueue.addLast(key);
+    Set<String> delivered = new HashSet<>();
+    BiConsumer<String, CallGraph> serialized = (name, cg) -> {
+      synchronized (delivered) {
+        Preconditions.checkState(delivered.add(name));
+        consumer.accept(name, cg);
+      }
+    };
+    List<ConstructTask> tasks = new ArrayList<>();
+    for (OrderingKey key : sortBySize(roots)) {
+      tasks.add(new ConstructTask(sess, key, null, serialized));
     }
 
-    for (OrderingKey key : maximums) {
-      analysisQueue.addLast(key);
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    } finally {
+      pool.shutdown();
     }
 
-    while (!analysisQueue.isEmpty()) {
-      long y = System.currentTimeMillis();
-      OrderingKey node = analysisQueue.removeFirst();
-      OrderingKey parent = node.getParent();
-      OrderedCallGraph accCG;
-      Placeholder ph = node.getPlaceholder();
-      Collection<InitialPlaceholder> initials = ph.getInitials();
-      Collection<OrderingKey> children = node.getChildren();
-      if (parent != null) {
-        OrderedCallGraph prevCG = intermediateGraphs.get(parent.getKlasses());
-        accCG = algorithm.createOrderedCallGraph(prevCG, sess.getFakeCaller());
-      } else {
-        accCG = algorithm.createOrderedCallGraph(sess);
-      }
-
-      if (!children.isEmpty() || initials.size() > 1) {
-        if (parent == null) {
-          ph.accept(accCG, impactMap);
-        } else {
-          ph.accept(accCG, parent.getPlaceholder(), impactMap);
-        }
-
-        intermediateGraphs.put(node.getKlasses(), accCG);
+    logger.info("constructGraph(): {}", (System.currentTimeMillis() - t) / 1000.0);
+  }
 
-        for (InitialPlaceholder iph : initials) {
-          OrderedCallGraph finalCG = algorithm.createOrderedCallGraph(accCG, sess.getFakeCaller());
-          Klass klass = iph.accept(finalCG);
-          Preconditions.checkState(result.put(klass.getTypeName(), finalCG) == null);
-        }
+  /**
+   * Analyzes the placeholder of the node on top of the graph of its parent, and hands the graphs of its entry
+   * klasses to the consumer.
+   *
+   * @return the graph that the children of the node continue from, or null if it is not shared.
+   */
+  private OrderedCallGraph construct(AnalysisSession sess, OrderingKey node, OrderedCallGraph prevCG,
+                                     BiConsumer<String, CallGraph> consumer) {
+    RTA algorithm = algorithm(setting);
+    OrderingKey parent = node.getParent();
+    OrderedCallGraph accCG;
+    Placeholder ph = node.getPlaceholder();
+    Collection<InitialPlaceholder> initials = ph.getInitials();
+    Collection<OrderingKey> children = node.getChildren();
+    if (parent != null) {
+      accCG = algorithm.createOrderedCallGraph(prevCG, sess.getFakeCaller());
+    } else {
+      accCG = algorithm.createOrderedCallGraph(sess);
+    }
+
+    if (!children.isEmpty() || initials.size() > 1) {
+      if (setting.getPreviousPlan() == null && setting.getPlanRecorder() == null) {
+        accept(node, accCG);
       } else {
-        for (InitialPlaceholder iph : initials) {
-          Klass klass = iph.accept(accCG);
-          Preconditions.checkState(result.put(klass.getTypeName(), accCG) == null);
-        }
+        acceptOrRestore(sess, node, accCG);
       }
 
-      for (OrderingKey child : node.getChildren()) {
-        analysisQueue.addLast(child);
+      for (InitialPlaceholder iph : initials) {
+        OrderedCallGraph finalCG = algorithm.createOrderedCallGraph(accCG, sess.getFakeCaller());
+        Klass klass = iph.accept(finalCG);
+        consumer.accept(klass.getTypeName(), finalCG);
       }
+
+      return accCG;
     }
 
-    logger.info("constructGraph(): {}", (System.currentTimeMillis() - t) / 1000.0);
+    for (InitialPlaceholder iph : initials) {
+      Klass klass = iph.accept(accCG);
+      consumer.accept(klass.getTypeName(), accCG);
+    }
 
-    return result;
+    return null;
   }
 
-  private void findMaximals() {
-    while (!candidates.isEmpty()) {
-      OrderingKey node = candidates.remove();
-      boolean created = false;
-      List<EdgeType> edges = availableOrderings.removeAll(node);
-      node = node.self();
-      for (EdgeType edge : edges) {
-        OrderingKey next = edge.tryConnect(node);
-        if (next != null) {
-          created = true;
-          if (node != next) {
-            node = merge(node, next).self();
-          }
-        }
-      }
-
-      if (created) {
-        updateCandidates(node);
-      }
-
-      advanceMaximums();
+  private void accept(OrderingKey node, OrderedCallGraph accCG) {
+    OrderingKey parent = node.getParent();
+    if (parent == null) {
+      node.getPlaceholder().accept(accCG, impactMap);
+    } else {
+      node.getPlaceholder().accept(accCG, parent.getPlaceholder(), impactMap);
     }
   }
 
-  public static final class ImpactMap {
+  /**
+   * Restores the layer of a shared key from the previous run if it is reusable, and analyzes it otherwise. The
+   * layer is recorded if the plan is recorded.
+   */
+  private void acceptOrRestore(AnalysisSession sess, OrderingKey node, OrderedCallGraph accCG) {
+    OrderingKey parent = node.getParent();
+    Placeholder ph = node.getPlaceholder();
+    Collection<ImpactUnit> impacts = parent == null ? ph.getImpacts(impactMap)
+            : ph.getImpacts(parent.getPlaceholder(), impactMap);
+    LayerSnapshot layer = findReusableLayer(node, impacts);
+    if (layer != null && algorithm(setting).restore(accCG, layer, sess)) {
+      restoredKeys.add(node);
+    } else {
+      accept(node, accCG);
+      layer = setting.getPlanRecorder() == null ? null : algorithm(setting).snapshot(accCG, impacts);
+    }
+
+    if (layer != null && setting.getPlanRecorder() != null) {
+      layers.put(node, layer);
+    }
+  }
 
-    private final Map<ImpactUnit, Integer> objDic = new HashMap<>();
-    private final List<ImpactUnit> objMap = new ArrayList<>();
-    private final Map<ImpactUnit, Integer> dynDic = new HashMap<>();
-    private final List<ImpactUnit> dynMap = new ArrayList<>();
-    private final Map<ImpactUnit, Integer> staticDic = new HashMap<>();
-    private final List<ImpactUnit> staticMap = new ArrayList<>();
-    private final Set<KlassMethod> visited = new HashSet<>();
-    private ImpactBitSet impact;
-    private final ImpactVisitor visitor = new ImpactVisitor() {
-      @Override
-      public void instantiateType(ImpactUnit unit, Klass type) {
-        if (type.isConcrete()) {
-          impact.setObj(addInt(unit, objDic, objMap));
-        } else {
-          for (KlassMethod m : TypeHelper.resolveInvocableMethods(type)) {
-            if (visited.add(m)) {
-              for (ImpactUnit u : m.getBody()) {
-                u.apply(this);
-              }
-            }
-          }
-        }
-      }
+  /**
+   * A layer of the previous run is reusable only on top of the restored layer of the same previous parent, since
+   * its contents are relative to the layers of its parents.
+   */
+  private LayerSnapshot findReusableLayer(OrderingKey node, Collection<ImpactUnit> impacts) {
+    PersistedPlan.Node prev = previousNodes.get(node);
+    if (prev == null || prev.layer == null) {
+      return null;
+    }
 
-      @Override
-      public void registerInvoked(ImpactUnit unit, KlassMethod callee) {
-        if (visited.add(callee)) {
-          impact.setStatic(addInt(unit, staticDic, staticMap));
-          for (ImpactUnit u : callee.getBody()) {
-            u.apply(this);
-          }
-        }
-      }
+    OrderingKey parent = node.getParent();
+    if (parent == null ? prev.parent != null
+            : !restoredKeys.contains(parent) || previousNodes.get(parent) != prev.parent) {
+      return null;
+    }
 
-      @Override
-      public void addDynamicImpact(ImpactUnit u, DynamicImpactResolver dynamicInvocationImpact) {
-        impact.setDynamic(addInt(u, dynDic, dynMap));
-      }
+    return prev.layer.isReusable(impacts, setting.getUnchangedKlasses()) ? prev.layer : null;
+  }
 
-      @Override
-      public void implicitInvoke(ImpactUnit unit, KlassMethod method) {
-        if (method == null || !visited.add(method)) {
-          return;
-        }
+  /**
+   * The impacts of the entry klasses. The units are indexed by the ids given by the {@link ImpactFactory}, and the
+   * map only records which of them are used by some entry.
+   */
+  public static final class ImpactMap {
 
-        impact.setStatic(addInt(unit, staticDic, staticMap));
-        for (ImpactUnit u : method.getBody()) {
-          u.apply(this);
-        }
+    private final ImpactFactory factory;
+    private final ClosureSummaries summaries = new ClosureSummaries();
+    private ImpactBitSet interned = new ImpactBitSet();
+    private Map<String, Integer> objNames;
+    private Map<String, Integer> dynNames;
+    private Map<String, Integer> staticNames;
+    ImpactMap(ImpactFactory factory) {
+      this.factory = factory;
+    }
+
+    /**
+     * Returns the impacts of the static closure of the given methods.
+     */
+    ImpactBitSet flatten(Set<KlassMethod> methods) {
+      ImpactBitSet bits = summaries.of(methods);
+      intern(bits);
+      return bits;
+    }
+
+    void intern(ImpactBitSet bits) {
+      interned = interned.or(bits);
+    }
+
+    /**
+     * Returns the bits of the impacts of the given names, or null if any of them is not used by the entries.
+     */
+    ImpactBitSet findImpacts(Collection<String> names) {
+      if (objNames == null) {
+        objNames = indexNames(interned.obj(), objMap());
+        dynNames = indexNames(interned.dyn(), dynMap());
+        staticNames = indexNames(interned.stat(), staticMap());
       }
 
-      @Override
-      public void acceptEntryMethod(KlassMethod m) {
+      ImpactBitSet bits = new ImpactBitSet();
+      for (String name : names) {
+        Integer id;
+        if ((id = objNames.get(name)) != null) {
+          bits.setObj(id);
+        } else if ((id = dynNames.get(name)) != null) {
+          bits.setDynamic(id);
+        } else if ((id = staticNames.get(name)) != null) {
+          bits.setStatic(id);
+        } else {
+          return null;
+        }
       }
 
-      @Override
-      public void acceptImpactUnit(ImpactUnit impactUnit) {
-
-      }
-    };
+      return bits;
+    }
 
-    public void set(Set<KlassMethod> methods, ImpactBitSet bits) {
-      impact = bits;
-      visited.clear();
-      for (KlassMethod m : methods) {
-        if (visited.add(m)) {
-          for (ImpactUnit u : m.getBody()) {
-            u.apply(visitor);
-          }
-        }
-      }
+    private static Map<String, Integer> indexNames(RoaringBitSet ids, ImpactTable table) {
+      Map<String, Integer> names = new HashMap<>();
+      ids.forEach(id -> names.put(table.get(id).toString(), id));
+      return names;
     }
 
-    private int addInt(ImpactUnit u, Map<ImpactUnit, Integer> dic, List<ImpactUnit> map) {
-      return dic.computeIfAbsent(u, (x) -> {
-        int y = map.size();
-        map.add(x);
-        return y;
-      });
+    /**
+     * The impacts used by any of the entries.
+     */
+    ImpactBitSet interned() {
+      return interned;
     }
 
-    List<ImpactUnit> objMap() {
-      return objMap;
+    ImpactTable objMap() {
+      return factory.getObjectCreations();
     }
 
-    List<ImpactUnit> staticMap() {
-      return staticMap;
+    ImpactTable staticMap() {
+      return factory.getStaticInvocations();
     }
 
-    List<ImpactUnit> dynMap() {
-      return dynMap;
+    ImpactTable dynMap() {
+      return factory.getDynamicInvocations();
     }
   }
 
-  private abstract static class EdgeType {
-    protected final OrderingKey source;
-    protected final OrderingKey target;
 
-    EdgeType(@NonNull OrderingKey source, OrderingKey target) {
-      this.source = source;
-      this.target = target;
-    }
+  /**
+   * The impacts of one entry klass. It is filled by a planning thread and interned to the shared ImpactMap
+   * afterwards.
+   */
+  static final class FlattenedImpacts {
+    private final Klass klass;
+    private final Set<KlassMethod> methods;
+    private final ImpactBitSet bits;
 
-    abstract OrderingKey tryConnect(OrderingKey result);
+    FlattenedImpacts(Klass klass, ClosureSummaries summaries) {
+      this.klass = klass;
+      this.methods = TypeHelper.resolveInvocableMethods(klass);
+      this.bits = summaries.of(methods);
+    }
   }
 
-  private final class SourceDominantType extends EdgeType {
+  /**
+   * Constructs the graphs of a subtree. The subtrees of the children only read the graph of their parent, so
+   * they are constructed in parallel once it is done.
+   */
+  private final class ConstructTask extends RecursiveAction {
+    private final AnalysisSession sess;
+    private final OrderingKey node;
+    private final OrderedCallGraph prevCG;
+    private final BiConsumer<String, CallGraph> consumer;
 
-    private SourceDominantType(OrderingKey source, OrderingKey target) {
-      super(source, target);
+    ConstructTask(AnalysisSession sess, OrderingKey node, OrderedCallGraph prevCG,
+                  BiConsumer<String, CallGraph> consumer) {
+      this.sess = sess;
+      this.node = node;
+      this.prevCG = prevCG;
+      this.consumer = consumer;
     }
 
     @Override
-    public OrderingKey tryConnect(OrderingKey result) {
-      return connectDominant(result, source, target);
+    protected void compute() {
+      OrderedCallGraph accCG = construct(sess, node, prevCG, consumer);
+      if (accCG != null) {
+        List<ConstructTask> tasks = new ArrayList<>();
+        for (OrderingKey child : childrenBySize(node)) {
+          tasks.add(new ConstructTask(sess, child, accCG, consumer));
+        }
+
+        if (isOverBudget()) {
+          for (ConstructTask task : tasks) {
+            task.compute();
+          }
+        } else {
+          invokeAll(tasks);
+        }
+      }
     }
   }
 
-  private final class TargetDominantType extends EdgeType {
+  private boolean isOverBudget() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory() > setting.getMemoryBudget();
+  }
 
-    private TargetDominantType(OrderingKey source, OrderingKey target) {
-      super(source, target);
+  /**
+   * Returns the children of the node in the descending order of the number of entry klasses in their subtrees.
+   */
+  private List<OrderingKey> childrenBySize(OrderingKey node) {
+    return sortBySize(node.getChildren());
+  }
+
+  private List<OrderingKey> sortBySize(Collection<OrderingKey> keys) {
+    List<OrderingKey> sorted = new ArrayList<>(keys);
+    sorted.sort(Comparator.comparing(subtreeSizes::get, Comparator.reverseOrder()));
+    return sorted;
+  }
+
+  private int countSubtree(OrderingKey node) {
+    int size = node.getPlaceholder().getInitials().size();
+    for (OrderingKey child : node.getChildren()) {
+      size += countSubtree(child);
     }
 
-    @Override
-    public OrderingKey tryConnect(OrderingKey parent) {
-      return connectDominant(parent, target, source);
+    subtreeSizes.put(node, size);
+    return size;
+  }
+
+  private static final class PendingKey {
+    private final OrderingKey node;
+    private final OrderedCallGraph prevCG;
+
+    PendingKey(OrderingKey node, OrderedCallGraph prevCG) {
+      this.node = node;
+      this.prevCG = prevCG;
     }
   }
 
-  private final class SiblingsType extends EdgeType {
+  private static final class FlattenTask extends RecursiveAction {
+    private final ClosureSummaries summaries;
+    private final Klass[] klasses;
+    private final FlattenedImpacts[] results;
+    private final int from;
+    private final int to;
 
-    private SiblingsType(OrderingKey source, OrderingKey target) {
-      super(source, target);
+    FlattenTask(ClosureSummaries summaries, Klass[] klasses, FlattenedImpacts[] results, int from, int to) {
+      this.summaries = summaries;
+      this.klasses = klasses;
+      this.results = results;
+      this.from = from;
+      this.to = to;
     }
 
     @Override
-    public OrderingKey tryConnect(OrderingKey parent) {
-      OrderingKey source = this.source.self();
-      OrderingKey target = this.target.self();
-      parent = parent.self();
-      if (source.hasParent() || target.hasParent()) {
-        return null;
-      }
-
-      BitSet klasses = mergeKlassBits(target, source);
-      OrderingKey key = orderingKeys.get(klasses);
-      if (key != parent) {
-        // klassbit is updated.
-        if (key == null) {
-          key = new OrderingKey(klasses, parent);
-          orderingKeys.put(klasses, key);
-        }
-        discardFromMaximal(parent);
-        key.makeDelegator(parent);
+    protected void compute() {
+      if (to - from == 1) {
+        results[from] = new FlattenedImpacts(klasses[from], summaries);
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new FlattenTask(summaries, klasses, results, from, mid),
+                new FlattenTask(summaries, klasses, results, mid, to));
       }
-
-      connect(key, source);
-      connect(key, target);
-      return key;
     }
   }
 
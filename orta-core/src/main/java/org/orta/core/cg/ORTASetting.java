@@ -0,0 +1,222 @@
+package org.orta.core.cg;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import com.google.common.base.Preconditions;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public class ORTASetting {
+
+  private int planningParallelism = 0;
+  private int constructionParallelism = 0;
+  private int candidateBands = 0;
+  private int candidateRows = 0;
+  private PlanningStrategy planningStrategy = PlanningStrategy.greedy();
+  private boolean workWeightedPlanning = false;
+  private PersistedPlan previousPlan;
+  private Predicate<String> unchangedKlasses;
+  private Consumer<PersistedPlan> planRecorder;
+  private long memoryBudget = Long.MAX_VALUE;
+  private double minSharedRatio = 0;
+  private boolean reachabilityOnly = false;
+
+  public ORTASetting parallelPlanning(int parallelism) {
+    Preconditions.checkArgument(parallelism >= 0, parallelism);
+    this.planningParallelism = parallelism;
+    return this;
+  }
+
+  public ORTASetting parallelPlanning() {
+    return parallelPlanning(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs sibling subtrees of the plan in parallel. Each subtree only reads the graph of its parent, so the
+   * graphs are the same as the ones constructed on a single thread.
+   */
+  public ORTASetting parallelConstruction(int parallelism) {
+    Preconditions.checkArgument(parallelism >= 0, parallelism);
+    this.constructionParallelism = parallelism;
+    return this;
+  }
+
+  public ORTASetting parallelConstruction() {
+    return parallelConstruction(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Stops forking sibling subtrees while the used heap exceeds {@code bytes}, and constructs them one after another
+   * on the current thread instead. This bounds the number of paths of layers held at once by the parallel
+   * construction.
+   */
+  public ORTASetting memoryBudget(long bytes) {
+    Preconditions.checkArgument(bytes > 0, bytes);
+    this.memoryBudget = bytes;
+    return this;
+  }
+
+  /**
+   * Runs RTA separately for each entry klass instead of constructing the planned layers, if the plan is estimated
+   * to share less than {@code ratio} of the separate work. See {@link PlanEstimate}. The entry impacts are checked
+   * against the ratio before planning, so entry klasses that cannot share enough skip the planning as well.
+   */
+  public ORTASetting separateFallback(double ratio) {
+    Preconditions.checkArgument(ratio >= 0 && ratio <= 1, ratio);
+    this.minSharedRatio = ratio;
+    return this;
+  }
+
+  /**
+   * Keeps only the reached methods of the constructed graphs, for the consumers that only use
+   * {@link CallGraph#nodes()}. See {@link org.orta.core.cg.rta.RTA#reachabilityOnly()}.
+   */
+  public ORTASetting reachabilityOnly(boolean reachabilityOnly) {
+    this.reachabilityOnly = reachabilityOnly;
+    return this;
+  }
+
+  public ORTASetting planningStrategy(PlanningStrategy strategy) {
+    this.planningStrategy = Preconditions.checkNotNull(strategy);
+    return this;
+  }
+
+  /**
+   * Scores the shared impacts by their estimated worklist work rather than by their number, so that the planner
+   * prefers sharing the impacts that are expensive to analyze.
+   */
+  public ORTASetting workWeightedPlanning(boolean enabled) {
+    this.workWeightedPlanning = enabled;
+    return this;
+  }
+
+  /**
+   * Only pairs ordering keys whose MinHash signatures of impacts agree on all {@code rows} rows of at least one
+   * of {@code bands} bands, instead of pairing every key with every maximum. Keys that share few impacts may not
+   * be paired, so less analysis is shared between the graphs, but each graph is still complete. This only affects
+   * the greedy strategy.
+   */
+  public ORTASetting approximatePlanning(int bands, int rows) {
+    Preconditions.checkArgument(bands > 0, bands);
+    Preconditions.checkArgument(rows > 0, rows);
+    this.candidateBands = bands;
+    this.candidateRows = rows;
+    return this;
+  }
+
+  public ORTASetting approximatePlanning() {
+    return approximatePlanning(20, 3);
+  }
+
+  /**
+   * Rebuilds the plan of a previous run instead of planning all entry klasses, and restores the shared layers of
+   * the previous run whose contributing classes are unchanged. {@code unchanged} tells whether a class, given by its
+   * type name, is unchanged since the previous run.
+   */
+  public ORTASetting reusePlan(PersistedPlan previous, Predicate<String> unchanged) {
+    this.previousPlan = Preconditions.checkNotNull(previous);
+    this.unchangedKlasses = Preconditions.checkNotNull(unchanged);
+    return this;
+  }
+
+  /**
+   * Records the constructed plan with its shared layers, so that it can be reused by the next run.
+   */
+  public ORTASetting recordPlan(Consumer<PersistedPlan> recorder) {
+    this.planRecorder = Preconditions.checkNotNull(recorder);
+    return this;
+  }
+
+  boolean isReachabilityOnly() {
+    return reachabilityOnly;
+  }
+
+  double getMinSharedRatio() {
+    return minSharedRatio;
+  }
+
+  long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  int getPlanningParallelism() {
+    return planningParallelism;
+  }
+
+  boolean isParallelPlanning() {
+    return planningParallelism > 1;
+  }
+
+  int getConstructionParallelism() {
+    return constructionParallelism;
+  }
+
+  boolean isParallelConstruction() {
+    return constructionParallelism > 1;
+  }
+
+  PlanningStrategy getPlanningStrategy() {
+    return planningStrategy;
+  }
+
+  boolean isWorkWeightedPlanning() {
+    return workWeightedPlanning;
+  }
+
+  boolean isApproximatePlanning() {
+    return candidateBands > 0;
+  }
+
+  int getCandidateBands() {
+    return candidateBands;
+  }
+
+  int getCandidateRows() {
+    return candidateRows;
+  }
+
+  PersistedPlan getPreviousPlan() {
+    return previousPlan;
+  }
+
+  Predicate<String> getUnchangedKlasses() {
+    return unchangedKlasses;
+  }
+
+  Consumer<PersistedPlan> getPlanRecorder() {
+    return planRecorder;
+  }
+}
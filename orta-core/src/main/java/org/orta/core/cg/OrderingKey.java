@@ -35,28 +35,28 @@ package org.orta.core.cg;
 
 
 import com.google.common.base.Preconditions;
+import org.orta.core.util.bitmap.RoaringBitSet;
 
-import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
 class OrderingKey implements Comparable<OrderingKey> {
   private final int klassesSize;  // this field is used for compareTo()
-  private final BitSet klasses;
+  private final RoaringBitSet klasses;
   private OrderingKey parent;
   private Placeholder ph;
   private Set<OrderingKey> children;
   private OrderingKey delegatorOf;
 
-  OrderingKey(BitSet klasses, Placeholder ph) {
+  OrderingKey(RoaringBitSet klasses, Placeholder ph) {
     this.klasses = klasses;
     klassesSize = this.klasses.cardinality();
     this.ph = ph;
     this.children = new HashSet<>();
   }
 
-  OrderingKey(BitSet klasses, OrderingKey same) {
+  OrderingKey(RoaringBitSet klasses, OrderingKey same) {
     this.klasses = klasses;
     klassesSize = this.klasses.cardinality();
     this.ph = same.ph.withoutInitial();
@@ -117,6 +117,11 @@ class OrderingKey implements Comparable<OrderingKey> {
     return ph;
   }
 
+  void setPlaceholder(Placeholder ph) {
+    Preconditions.checkState(delegatorOf == null);
+    this.ph = ph;
+  }
+
   Collection<OrderingKey> getChildren() {
     return children;
   }
@@ -129,7 +134,7 @@ class OrderingKey implements Comparable<OrderingKey> {
       return 0;
     }
 
-    int diff = o.ph.getScore() - ph.getScore();
+    int diff = Integer.compare(o.ph.getScore(), ph.getScore());
     if (diff == 0) {
       diff = klassesSize - o.klassesSize;
       if (diff == 0) {
@@ -162,10 +167,18 @@ class OrderingKey implements Comparable<OrderingKey> {
       key = key.delegatorOf;
     }
 
+    // compresses the path, so that the keys on it delegate to the representative directly.
+    OrderingKey next = this;
+    while (next.delegatorOf != null && next.delegatorOf != key) {
+      OrderingKey delegator = next.delegatorOf;
+      next.delegatorOf = key;
+      next = delegator;
+    }
+
     return key;
   }
 
-  BitSet getKlasses() {
+  RoaringBitSet getKlasses() {
     return self().klasses;
   }
 
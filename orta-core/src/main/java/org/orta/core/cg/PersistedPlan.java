@@ -0,0 +1,360 @@
+package org.orta.core.cg;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import org.orta.core.cg.rta.LayerSnapshot;
+import org.orta.core.util.bitmap.RoaringBitSet;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The ordering trees of a previous run, with the recorded contents of their shared layers. The trees are kept by
+ * the names of the entry klasses, so that the next run can remove and insert entry klasses instead of planning
+ * all of them again.
+ */
+public final class PersistedPlan {
+
+  private static final Logger logger = LoggerFactory.getLogger(PersistedPlan.class);
+  private static final int VERSION = 2;
+
+  private final List<Node> roots;
+
+  private PersistedPlan(List<Node> roots) {
+    this.roots = roots;
+  }
+
+  /**
+   * Records the trees that were constructed from {@code roots}, with the layers of their shared keys.
+   */
+  static PersistedPlan capture(Collection<OrderingKey> roots, Map<OrderingKey, LayerSnapshot> layers) {
+    List<Node> result = new ArrayList<>();
+    Deque<OrderingKey> keys = new ArrayDeque<>();
+    Deque<Node> nodes = new ArrayDeque<>();
+    for (OrderingKey root : roots) {
+      keys.addLast(root);
+      nodes.addLast(new Node(null));
+      result.add(nodes.getLast());
+    }
+
+    while (!keys.isEmpty()) {
+      OrderingKey key = keys.removeFirst();
+      Node node = nodes.removeFirst();
+      for (InitialPlaceholder iph : key.getPlaceholder().getInitials()) {
+        node.initials.add(iph.getKlass().getTypeName());
+      }
+
+      node.layer = layers.get(key);
+      for (OrderingKey child : key.getChildren()) {
+        Node childNode = new Node(node);
+        node.children.add(childNode);
+        keys.addLast(child);
+        nodes.addLast(childNode);
+      }
+    }
+
+    return new PersistedPlan(result);
+  }
+
+  public static PersistedPlan read(Path path) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new GZIPInputStream(Files.newInputStream(path))))) {
+      if (in.readInt() != VERSION) {
+        throw new IOException("Unsupported plan version: " + path);
+      }
+
+      List<Node> nodes = new ArrayList<>();
+      List<Node> roots = new ArrayList<>();
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        int parentIdx = in.readInt();
+        Node node = new Node(parentIdx < 0 ? null : nodes.get(parentIdx));
+        if (node.parent == null) {
+          roots.add(node);
+        } else {
+          node.parent.children.add(node);
+        }
+
+        int initials = in.readInt();
+        for (int j = 0; j < initials; j++) {
+          node.initials.add(in.readUTF());
+        }
+
+        if (in.readBoolean()) {
+          node.layer = LayerSnapshot.readFrom(in);
+        }
+
+        nodes.add(node);
+      }
+
+      return new PersistedPlan(roots);
+    }
+  }
+
+  public void write(Path path) throws IOException {
+    // Parents are written before their children, so each node only refers to the index of its parent.
+    Map<Node, Integer> ids = new HashMap<>();
+    Deque<Node> queue = new ArrayDeque<>(roots);
+    List<Node> nodes = new ArrayList<>();
+    while (!queue.isEmpty()) {
+      Node node = queue.removeFirst();
+      ids.put(node, nodes.size());
+      nodes.add(node);
+      queue.addAll(node.children);
+    }
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new GZIPOutputStream(Files.newOutputStream(path))))) {
+      out.writeInt(VERSION);
+      out.writeInt(nodes.size());
+      for (Node node : nodes) {
+        out.writeInt(node.parent == null ? -1 : ids.get(node.parent));
+        out.writeInt(node.initials.size());
+        for (String name : node.initials) {
+          out.writeUTF(name);
+        }
+
+        out.writeBoolean(node.layer != null);
+        if (node.layer != null) {
+          node.layer.writeTo(out);
+        }
+      }
+    }
+  }
+
+  /**
+   * Rebuilds the previous trees for the current entries. The entries that are removed or whose klasses are changed
+   * are dropped from the trees, and the keys left without entries are pruned. Each shared key gets the impacts it
+   * had in the previous run if all entries of its subtree still have them, so that its layer can be reused, and
+   * the impacts common to the entries of its subtree otherwise. Either way, a key never has impacts that its
+   * descendants do not have. The new and changed entries are inserted below the deepest shared key whose impacts
+   * they all have, and the entries that fit no tree are planned by the planning strategy.
+   *
+   * @param previous receives the previous node of each rebuilt shared key, whose layer may be reused.
+   */
+  Collection<OrderingKey> replan(List<OrderingKey> entries, ORTACallGraphBuilder.ImpactMap impactMap,
+                                 ORTASetting setting, Map<OrderingKey, Node> previous) {
+    Predicate<String> unchanged = setting.getUnchangedKlasses();
+    Map<String, OrderingKey> kept = new LinkedHashMap<>();
+    List<OrderingKey> inserting = new ArrayList<>();
+    for (OrderingKey entry : entries) {
+      String name = getEntryName(entry);
+      if (unchanged.test(name)) {
+        kept.put(name, entry);
+      } else {
+        inserting.add(entry);
+      }
+    }
+
+    List<OrderingKey> result = new ArrayList<>();
+    for (Node root : roots) {
+      OrderingKey key = rebuild(root, kept, previous);
+      if (key != null) {
+        result.add(key);
+      }
+    }
+
+    for (OrderingKey key : result) {
+      restoreImpacts(key, null, impactMap, previous);
+    }
+
+    // The entries that are not found in the previous trees are left.
+    inserting.addAll(kept.values());
+    List<OrderingKey> leftovers = new ArrayList<>();
+    int inserted = 0;
+    for (OrderingKey entry : inserting) {
+      OrderingKey parent = findParent(result, entry.getPlaceholder().getImpactBits());
+      if (parent != null) {
+        entry.setParent(parent);
+        inserted++;
+      } else {
+        leftovers.add(entry);
+      }
+    }
+
+    logger.info("Reused plan: {} roots, {} inserted, {} planned again", result.size(), inserted,
+            leftovers.size());
+    if (leftovers.size() > 2) {
+      result.addAll(setting.getPlanningStrategy().plan(leftovers, setting));
+    } else {
+      result.addAll(leftovers);
+    }
+
+    return result;
+  }
+
+  private static String getEntryName(OrderingKey entry) {
+    return entry.getPlaceholder().getInitials().iterator().next().getKlass().getTypeName();
+  }
+
+  private static boolean isShared(OrderingKey key) {
+    return !key.getChildren().isEmpty() || key.getPlaceholder().getInitials().size() > 1;
+  }
+
+  @Nullable
+  private static OrderingKey rebuild(Node node, Map<String, OrderingKey> kept, Map<OrderingKey, Node> previous) {
+    List<OrderingKey> children = new ArrayList<>();
+    for (Node child : node.children) {
+      OrderingKey key = rebuild(child, kept, previous);
+      if (key != null) {
+        children.add(key);
+      }
+    }
+
+    List<OrderingKey> initials = new ArrayList<>();
+    for (String name : node.initials) {
+      OrderingKey entry = kept.remove(name);
+      if (entry != null) {
+        initials.add(entry);
+      }
+    }
+
+    if (initials.isEmpty() && children.size() <= 1) {
+      return children.isEmpty() ? null : children.get(0);
+    } else if (initials.size() == 1 && children.isEmpty()) {
+      return initials.get(0);
+    }
+
+    RoaringBitSet klasses = new RoaringBitSet();
+    ImpactBitSet impacts = null;
+    List<InitialPlaceholder> iphs = new ArrayList<>();
+    for (OrderingKey entry : initials) {
+      klasses = klasses.union(entry.getKlasses());
+      ImpactBitSet bits = entry.getPlaceholder().getImpactBits();
+      impacts = impacts == null ? bits : impacts.and(bits);
+      iphs.addAll(entry.getPlaceholder().getInitials());
+    }
+
+    for (OrderingKey child : children) {
+      klasses = klasses.union(child.getKlasses());
+      ImpactBitSet bits = child.getPlaceholder().getImpactBits();
+      impacts = impacts == null ? bits : impacts.and(bits);
+    }
+
+    OrderingKey key = new OrderingKey(klasses, new Placeholder(impacts, iphs));
+    for (OrderingKey child : children) {
+      child.setParent(key);
+    }
+
+    previous.put(key, node);
+    return key;
+  }
+
+  /**
+   * Gives each rebuilt shared key the impacts of its parent and the impacts that were added to its previous layer,
+   * unless some entry of its subtree does not have them anymore.
+   */
+  private static void restoreImpacts(OrderingKey key, ImpactBitSet parentImpacts,
+                                     ORTACallGraphBuilder.ImpactMap impactMap, Map<OrderingKey, Node> previous) {
+    Node node = previous.get(key);
+    if (node == null) {
+      return;
+    }
+
+    Placeholder ph = key.getPlaceholder();
+    ImpactBitSet common = ph.getImpactBits();
+    ImpactBitSet added = node.layer == null ? null : impactMap.findImpacts(node.layer.getImpacts());
+    if (added != null) {
+      ImpactBitSet impacts = parentImpacts == null ? added : parentImpacts.or(added);
+      if (common.contains(impacts)) {
+        impacts.setWeights(common.getWeights());
+        key.setPlaceholder(new Placeholder(impacts.runOptimize(), ph.getInitials()));
+      }
+    }
+
+    for (OrderingKey child : key.getChildren()) {
+      restoreImpacts(child, key.getPlaceholder().getImpactBits(), impactMap, previous);
+    }
+  }
+
+  /**
+   * Descends to the deepest shared key whose impacts are all in {@code bits}, preferring the key of the highest
+   * score among the siblings.
+   */
+  @Nullable
+  static OrderingKey findParent(Collection<OrderingKey> roots, ImpactBitSet bits) {
+    OrderingKey found = null;
+    Collection<OrderingKey> candidates = roots;
+    while (true) {
+      OrderingKey best = null;
+      for (OrderingKey key : candidates) {
+        ImpactBitSet impacts = key.getPlaceholder().getImpactBits();
+        if (isShared(key) && bits.contains(impacts)
+                && (best == null || key.getPlaceholder().getScore() > best.getPlaceholder().getScore())) {
+          best = key;
+        }
+      }
+
+      if (best == null) {
+        return found;
+      }
+
+      found = best;
+      candidates = best.getChildren();
+    }
+  }
+
+  static final class Node {
+    @Nullable
+    final Node parent;
+    final List<String> initials = new ArrayList<>();
+    final List<Node> children = new ArrayList<>();
+    @Nullable
+    LayerSnapshot layer;
+
+    Node(@Nullable Node parent) {
+      this.parent = parent;
+    }
+  }
+}
@@ -35,13 +35,15 @@ package org.orta.core.cg;
 
 
 
+import org.orta.core.cg.impacts.ImpactTable;
 import org.orta.core.cg.impacts.ImpactUnit;
 import org.orta.core.type.klass.KlassMethod;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.slf4j.Logger;
+import org.orta.core.util.bitmap.RoaringBitSet;
 import org.slf4j.LoggerFactory;
 
-import java.util.BitSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -68,24 +70,25 @@ public class Placeholder implements Comparable<Placeholder> {
   }
 
   Placeholder(@NonNull ImpactBitSet pag) {
-    this(pag, null);
+    this(pag, (InitialPlaceholder) null);
   }
 
-  private static boolean iterateBits(BitSet bit, List<ImpactUnit> u, OrderedCallGraph cg) {
-    int idx = bit.nextSetBit(0);
-    if (idx < 0) {
+  Placeholder(@NonNull ImpactBitSet pag, Collection<InitialPlaceholder> initials) {
+    this.pag = pag;
+    this.iph = new HashSet<>(initials);
+  }
+
+  private static boolean iterateBits(RoaringBitSet bit, ImpactTable u, OrderedCallGraph cg) {
+    if (bit.isEmpty()) {
       return false;
     }
 
-    do {
-      cg.addImpactUnit(u.get(idx));
-    } while ((idx = bit.nextSetBit(idx + 1)) >= 0);
-
+    bit.forEach(idx -> cg.addImpactUnit(u.get(idx)));
     return true;
   }
 
   public int getScore() {
-    return pag.getCardinality();
+    return pag.getScore();
   }
 
   public ImpactBitSet getImpactBits() {
@@ -102,7 +105,7 @@ public class Placeholder implements Comparable<Placeholder> {
       return 0;
     }
 
-    return o.getScore() - getScore();
+    return Integer.compare(o.getScore(), getScore());
   }
 
   void accept(OrderedCallGraph accCG, ORTACallGraphBuilder.ImpactMap impactMap) {
@@ -112,11 +115,43 @@ public class Placeholder implements Comparable<Placeholder> {
     iterateBits(pag.stat(), impactMap.staticMap(), accCG);
   }
 
-  private boolean iterateBits(BitSet target, BitSet previous, List<ImpactUnit> objMap,
+  private boolean iterateBits(RoaringBitSet target, RoaringBitSet previous, ImpactTable objMap,
                               OrderedCallGraph accCG) {
-    BitSet clone = (BitSet) target.clone();
-    clone.andNot(previous);
-    return iterateBits(clone, objMap, accCG);
+    return iterateBits(target.difference(previous), objMap, accCG);
+  }
+
+  private static boolean collectBits(RoaringBitSet bit, ImpactTable u, Collection<ImpactUnit> impacts) {
+    if (bit.isEmpty()) {
+      return false;
+    }
+
+    bit.forEach(idx -> impacts.add(u.get(idx)));
+    return true;
+  }
+
+  /**
+   * Returns the impacts that accept() adds to a graph of a root.
+   */
+  Collection<ImpactUnit> getImpacts(ORTACallGraphBuilder.ImpactMap impactMap) {
+    List<ImpactUnit> impacts = new ArrayList<>();
+    if (collectBits(pag.obj(), impactMap.objMap(), impacts)) {
+      collectBits(pag.dyn(), impactMap.dynMap(), impacts);
+    }
+    collectBits(pag.stat(), impactMap.staticMap(), impacts);
+    return impacts;
+  }
+
+  /**
+   * Returns the impacts that accept() adds to a graph on top of the graph of the parent.
+   */
+  Collection<ImpactUnit> getImpacts(Placeholder parent, ORTACallGraphBuilder.ImpactMap impactMap) {
+    ImpactBitSet prevImpacts = parent.getImpactBits();
+    List<ImpactUnit> impacts = new ArrayList<>();
+    if (collectBits(pag.obj().difference(prevImpacts.obj()), impactMap.objMap(), impacts)) {
+      collectBits(pag.dyn().difference(prevImpacts.dyn()), impactMap.dynMap(), impacts);
+    }
+    collectBits(pag.stat().difference(prevImpacts.stat()), impactMap.staticMap(), impacts);
+    return impacts;
   }
 
   Collection<InitialPlaceholder> getInitials() {
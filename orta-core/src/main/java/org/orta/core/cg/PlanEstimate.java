@@ -0,0 +1,90 @@
+package org.orta.core.cg;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+/**
+ * The work of constructing the graphs of a plan predicted from the scores of its placeholders, against the work of
+ * running RTA separately for each entry klass. The work of a graph is estimated by the score of the impacts it
+ * analyzes, so a shared layer costs the impacts it adds to its parent, and each entry klass costs the impacts it
+ * adds to the layer it is constructed on.
+ */
+public final class PlanEstimate {
+  private final int entries;
+  private final int sharedLayers;
+  private final long separateCost;
+  private final long orderedCost;
+
+  PlanEstimate(int entries, int sharedLayers, long separateCost, long orderedCost) {
+    this.entries = entries;
+    this.sharedLayers = sharedLayers;
+    this.separateCost = separateCost;
+    this.orderedCost = orderedCost;
+  }
+
+  public int getEntries() {
+    return entries;
+  }
+
+  public int getSharedLayers() {
+    return sharedLayers;
+  }
+
+  /**
+   * The estimated work of running RTA once for each entry klass.
+   */
+  public long getSeparateCost() {
+    return separateCost;
+  }
+
+  /**
+   * The estimated work of constructing the shared layers and the graphs of the entry klasses on top of them.
+   */
+  public long getOrderedCost() {
+    return orderedCost;
+  }
+
+  /**
+   * The fraction of the separate work that the plan shares, between 0 and 1.
+   */
+  public double getSharedRatio() {
+    return separateCost == 0 ? 0 : 1 - (double) orderedCost / separateCost;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("entries: %d, shared layers: %d, separate cost: %d, ordered cost: %d, shared: %.1f%%",
+            entries, sharedLayers, separateCost, orderedCost, getSharedRatio() * 100);
+  }
+}
@@ -0,0 +1,86 @@
+package org.orta.core.cg;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Arranges the entry klasses into trees of ordering keys. The analysis of a key continues from the call graph
+ * of its parent, so the impacts shared by the keys of a subtree are analyzed only once.
+ */
+public abstract class PlanningStrategy {
+
+  private final String name;
+
+  PlanningStrategy(String name) {
+    this.name = name;
+  }
+
+  public static PlanningStrategy greedy() {
+    return new PlanningStrategy("greedy") {
+      @Override
+      Collection<OrderingKey> plan(List<OrderingKey> entries, ORTASetting setting) {
+        return new GreedyPlanner(setting).plan(entries);
+      }
+    };
+  }
+
+  public static PlanningStrategy agglomerative() {
+    return new AgglomerativePlanningStrategy();
+  }
+
+  public static PlanningStrategy forName(String name) {
+    switch (name) {
+      case "greedy":
+        return greedy();
+      case "agglomerative":
+        return agglomerative();
+      default:
+        throw new IllegalArgumentException("Unknown planning strategy: " + name);
+    }
+  }
+
+  /**
+   * @param entries a key for each entry klass, which carries its initial placeholder.
+   * @return the roots of the ordering trees. Every entry key must be reachable from exactly one root.
+   */
+  abstract Collection<OrderingKey> plan(List<OrderingKey> entries, ORTASetting setting);
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
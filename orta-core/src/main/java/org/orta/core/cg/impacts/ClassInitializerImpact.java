@@ -42,9 +42,11 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 public class ClassInitializerImpact implements ImpactUnit {
 
   private final Klass klass;
+  private final int id;
 
-  public ClassInitializerImpact(Klass klass) {
+  ClassInitializerImpact(Klass klass, int id) {
     this.klass = klass;
+    this.id = id;
   }
 
   @Override
@@ -78,6 +80,11 @@ public class ClassInitializerImpact implements ImpactUnit {
     return m != null && !m.getBody().isEmpty() ? 1 : 0;
   }
 
+  @Override
+  public int getId() {
+    return id;
+  }
+
   @Override
   public int hashCode() {
     return klass.hashCode();
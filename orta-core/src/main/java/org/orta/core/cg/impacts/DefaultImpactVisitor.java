@@ -100,13 +100,21 @@ public abstract class DefaultImpactVisitor implements ImpactVisitor {
     consumeWorkList();
   }
 
-  private void consumeWorkList() {
+  protected void consumeWorkList() {
     while (!methodWorklist.isEmpty()) {
       this.currentCaller = methodWorklist.remove();
-      currentCaller.getBody().forEach(u -> u.apply(this));
+      visitBody(currentCaller);
     }
   }
 
+  /**
+   * Applies the impacts of a newly visited method, which is also the current caller. A visitor that already knows
+   * what the body of a method does can apply that instead of parsing the body.
+   */
+  protected void visitBody(@NonNull KlassMethod method) {
+    method.getBody().forEach(u -> u.apply(this));
+  }
+
   private void addWorkList(@NonNull KlassMethod invoked) {
     if (cg.markVisited(invoked)) {
       methodWorklist.add(invoked);
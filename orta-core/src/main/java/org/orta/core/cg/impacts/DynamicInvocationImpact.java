@@ -60,11 +60,14 @@ public class DynamicInvocationImpact implements DynamicImpactResolver, ImpactUni
   @NonNull
   private final MethodDescriptor desc;
 
+  private final int id;
+
   DynamicInvocationImpact(@NonNull Klass klass, @NonNull String name,
-                          @NonNull MethodDescriptor desc) {
+                          @NonNull MethodDescriptor desc, int id) {
     this.klass = klass;
     this.name = name;
     this.desc = desc;
+    this.id = id;
   }
 
   @Override
@@ -97,6 +100,21 @@ public class DynamicInvocationImpact implements DynamicImpactResolver, ImpactUni
     return Integer.MAX_VALUE;
   }
 
+  @Override
+  public int getId() {
+    return id;
+  }
+
+  @NonNull
+  public String getName() {
+    return name;
+  }
+
+  @NonNull
+  public MethodDescriptor getDescriptor() {
+    return desc;
+  }
+
   @NonNull
   @Override
   public Klass getReceiverType() {
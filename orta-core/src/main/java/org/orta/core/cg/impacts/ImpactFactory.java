@@ -47,28 +47,31 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Deque;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ImpactFactory {
 
   private static final Logger logger = LoggerFactory.getLogger(
           ImpactFactory.class);
-  private final Map<KlassMethod, ImpactUnit> singleInvocations = new HashMap<>();
-  private final Map<Klass, ImpactUnit> objectCreations = new HashMap<>();
-  private final Map<Klass, ImpactUnit> objectRefs = new HashMap<>();
-  private final Map<ImpactUnit, ImpactUnit> dynamicInvocations = new HashMap<>();
+  private final Map<KlassMethod, ImpactUnit> singleInvocations = new ConcurrentHashMap<>();
+  private final Map<Klass, ImpactUnit> objectCreations = new ConcurrentHashMap<>();
+  private final Map<Klass, ImpactUnit> objectRefs = new ConcurrentHashMap<>();
+  private final Map<ImpactUnit, ImpactUnit> dynamicInvocations = new ConcurrentHashMap<>();
+  private final ImpactTable objectCreationTable = new ImpactTable();
+  private final ImpactTable staticInvocationTable = new ImpactTable();
+  private final ImpactTable dynamicInvocationTable = new ImpactTable();
 
   private void clinit(@NonNull Klass kls, @NonNull Set<ImpactUnit> units) {
     Deque<Klass> klasses = new LinkedList<>();
     klasses.add(kls);
     while (!klasses.isEmpty()) {
       Klass ptr = klasses.pop();
-      units.add(objectRefs.computeIfAbsent(ptr, ClassInitializerImpact::new));
+      units.add(objectRefs.computeIfAbsent(ptr,
+              k -> staticInvocationTable.add(id -> new ClassInitializerImpact(k, id))));
       klasses.addAll(ptr.getInterfaces());
       Klass parent = ptr.getSuperClass();
       if (parent != null) {
@@ -84,20 +87,49 @@ public class ImpactFactory {
         clinit(method.getDeclaringClass(), units);
       }
 
-      units.add(singleInvocations.computeIfAbsent(method, SingleInvocationImpact::new));
+      units.add(singleInvocations.computeIfAbsent(method,
+              m -> staticInvocationTable.add(id -> new SingleInvocationImpact(m, id))));
     }
   }
 
   private void object(@NonNull Klass type, @NonNull Set<ImpactUnit> units) {
     clinit(type, units);
-    units.add(objectCreations.computeIfAbsent(type, ObjectCreationImpact::new));
+    units.add(objectCreations.computeIfAbsent(type,
+            k -> objectCreationTable.add(id -> new ObjectCreationImpact(k, id))));
   }
 
   private void dynamicInvoke(@NonNull Klass owner, @NonNull String name,
                              @NonNull MethodDescriptor desc,
                              @NonNull Set<ImpactUnit> units) {
-    DynamicInvocationImpact impact = new DynamicInvocationImpact(owner, name, desc);
-    units.add(dynamicInvocations.computeIfAbsent(impact, Function.identity()));
+    units.add(getDynamicInvocation(owner, name, desc));
+  }
+
+  public DynamicInvocationImpact getDynamicInvocation(@NonNull Klass owner, @NonNull String name,
+                                                      @NonNull MethodDescriptor desc) {
+    DynamicInvocationImpact impact = new DynamicInvocationImpact(owner, name, desc, -1);
+    return (DynamicInvocationImpact) dynamicInvocations.computeIfAbsent(impact,
+            k -> dynamicInvocationTable.add(id -> new DynamicInvocationImpact(owner, name, desc, id)));
+  }
+
+  /**
+   * The units of instantiated types, indexed by their ids.
+   */
+  public ImpactTable getObjectCreations() {
+    return objectCreationTable;
+  }
+
+  /**
+   * The units of static invocations and class initializers, indexed by their ids.
+   */
+  public ImpactTable getStaticInvocations() {
+    return staticInvocationTable;
+  }
+
+  /**
+   * The units of dynamic call sites, indexed by their ids.
+   */
+  public ImpactTable getDynamicInvocations() {
+    return dynamicInvocationTable;
   }
 
   public ImpactBuilder builder() {
@@ -112,7 +144,7 @@ public class ImpactFactory {
   @SuppressWarnings("UnusedReturnValue")
   public class ImpactBuilder {
 
-    private final Set<ImpactUnit> units = new HashSet<>();
+    private final Set<ImpactUnit> units = new LinkedHashSet<>();
 
     public ImpactBuilder invokeDefaultConstructor(Klass kls) {
 //      if (kls.isConcrete()) {
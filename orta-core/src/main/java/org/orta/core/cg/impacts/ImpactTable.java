@@ -0,0 +1,70 @@
+package org.orta.core.cg.impacts;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * The impact units of one kind indexed by their ids. The ids are handed out by {@link ImpactFactory} in the order
+ * the units are created, so they are dense and can index bitsets and arrays directly. A unit is stored before its
+ * id escapes, so the table can be read while other threads add units.
+ */
+public final class ImpactTable {
+  private volatile ImpactUnit[] units = new ImpactUnit[256];
+  private volatile int size;
+
+  synchronized <T extends ImpactUnit> T add(IntFunction<T> creator) {
+    int id = size;
+    T unit = creator.apply(id);
+    ImpactUnit[] array = units;
+    if (id == array.length) {
+      array = Arrays.copyOf(array, id * 2);
+    }
+
+    array[id] = unit;
+    units = array;
+    size = id + 1;
+    return unit;
+  }
+
+  public ImpactUnit get(int id) {
+    return units[id];
+  }
+
+  public int size() {
+    return size;
+  }
+}
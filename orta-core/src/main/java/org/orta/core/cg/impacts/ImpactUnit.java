@@ -51,4 +51,10 @@ public interface ImpactUnit {
   boolean isDispatched();
 
   int invokeCount();
+
+  /**
+   * Returns the id of the unit among the units of its kind, which is its index in the table of the kind in
+   * {@link ImpactFactory}.
+   */
+  int getId();
 }
@@ -48,9 +48,11 @@ public class ObjectCreationImpact implements ImpactUnit {
           ObjectCreationImpact.class);
   @NonNull
   private final Klass type;
+  private final int id;
 
-  ObjectCreationImpact(@NonNull Klass type) {
+  ObjectCreationImpact(@NonNull Klass type, int id) {
     this.type = type;
+    this.id = id;
   }
 
   @Override
@@ -83,6 +85,11 @@ public class ObjectCreationImpact implements ImpactUnit {
     return 1;
   }
 
+  @Override
+  public int getId() {
+    return id;
+  }
+
   @Override
   public int hashCode() {
     return Objects.hash(type);
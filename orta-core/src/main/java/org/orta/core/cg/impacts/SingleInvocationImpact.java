@@ -49,9 +49,11 @@ public class SingleInvocationImpact implements ImpactUnit {
           SingleInvocationImpact.class);
   @NonNull
   private final KlassMethod method;
+  private final int id;
 
-  SingleInvocationImpact(@NonNull KlassMethod m) {
+  SingleInvocationImpact(@NonNull KlassMethod m, int id) {
     this.method = m;
+    this.id = id;
   }
 
   @Override
@@ -84,6 +86,11 @@ public class SingleInvocationImpact implements ImpactUnit {
     return !method.getBody().isEmpty() ? 1 : 0;
   }
 
+  @Override
+  public int getId() {
+    return id;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (o == null) {
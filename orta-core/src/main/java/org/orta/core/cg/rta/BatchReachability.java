@@ -0,0 +1,223 @@
+package org.orta.core.cg.rta;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import org.orta.core.type.klass.KlassMethod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Computes the methods reachable from many sets of entries in one pass over a graph. The graph is condensed into
+ * its strongly connected components, each component is marked with the sets whose entries are in it, and the marks
+ * are propagated to the successors in topological order. The reachables of a set are then the members of the
+ * components that carry its mark, so they can be handed out without traversing the graph again.
+ */
+final class BatchReachability {
+  private final MethodGraph graph;
+  private final int[] componentOf;
+  private final int[][] members;  // in reverse topological order, the sinks first
+
+  private BatchReachability(MethodGraph graph) {
+    this.graph = graph;
+    this.componentOf = new int[graph.nodeCount()];
+    List<int[]> components = new ArrayList<>();
+    condense(components);
+    this.members = components.toArray(new int[0][]);
+  }
+
+  /**
+   * Hands the methods reachable from each set of entries, and from {@code root}, to {@code consumer}.
+   */
+  static <K> void forEachReachables(MethodGraph graph, KlassMethod root, Map<K, ? extends Set<KlassMethod>> entries,
+                                    BiConsumer<K, Iterator<KlassMethod>> consumer) {
+    BatchReachability reachability = new BatchReachability(graph);
+    List<K> keys = new ArrayList<>(entries.keySet());
+    int words = (keys.size() + 63) >>> 6;
+    long[][] marks = new long[reachability.members.length][words];
+
+    int rootIndex = graph.indexOf(root);
+    if (rootIndex >= 0) {
+      Arrays.fill(marks[reachability.componentOf[rootIndex]], -1L);
+    }
+
+    for (int k = 0; k < keys.size(); k++) {
+      for (KlassMethod m : entries.get(keys.get(k))) {
+        int index = graph.indexOf(m);
+        if (index >= 0) {
+          marks[reachability.componentOf[index]][k >>> 6] |= 1L << k;
+        }
+      }
+    }
+
+    reachability.propagate(marks);
+    for (int k = 0; k < keys.size(); k++) {
+      consumer.accept(keys.get(k), reachability.new MarkedMethods(marks, k));
+    }
+  }
+
+  private void propagate(long[][] marks) {
+    for (int c = members.length - 1; c >= 0; c--) {
+      long[] mark = marks[c];
+      for (int node : members[c]) {
+        int count = graph.successorCount(node);
+        for (int i = 0; i < count; i++) {
+          int d = componentOf[graph.successor(node, i)];
+          if (d != c) {
+            long[] target = marks[d];
+            for (int w = 0; w < mark.length; w++) {
+              target[w] |= mark[w];
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the components with Tarjan's algorithm, iteratively so that long call chains do not overflow the stack.
+   * The components are found in reverse topological order.
+   */
+  private void condense(List<int[]> components) {
+    int n = componentOf.length;
+    int[] order = new int[n];
+    int[] low = new int[n];
+    int[] next = new int[n];
+    Arrays.fill(order, -1);
+    int[] stack = new int[n];
+    int stackSize = 0;
+    boolean[] onStack = new boolean[n];
+    int[] path = new int[n];
+    int counter = 0;
+
+    for (int start = 0; start < n; start++) {
+      if (order[start] >= 0) {
+        continue;
+      }
+
+      int depth = 0;
+      path[depth++] = start;
+      order[start] = low[start] = counter++;
+      stack[stackSize++] = start;
+      onStack[start] = true;
+      while (depth > 0) {
+        int node = path[depth - 1];
+        if (next[node] < graph.successorCount(node)) {
+          int succ = graph.successor(node, next[node]++);
+          if (order[succ] < 0) {
+            order[succ] = low[succ] = counter++;
+            stack[stackSize++] = succ;
+            onStack[succ] = true;
+            path[depth++] = succ;
+          } else if (onStack[succ]) {
+            low[node] = Math.min(low[node], order[succ]);
+          }
+
+          continue;
+        }
+
+        depth--;
+        if (depth > 0) {
+          int parent = path[depth - 1];
+          low[parent] = Math.min(low[parent], low[node]);
+        }
+
+        if (low[node] == order[node]) {
+          int size = 0;
+          while (stack[stackSize - 1 - size] != node) {
+            size++;
+          }
+
+          int[] component = Arrays.copyOfRange(stack, stackSize - size - 1, stackSize);
+          stackSize -= component.length;
+          for (int member : component) {
+            onStack[member] = false;
+            componentOf[member] = components.size();
+          }
+
+          components.add(component);
+        }
+      }
+    }
+  }
+
+  private final class MarkedMethods implements Iterator<KlassMethod> {
+    private final long[][] marks;
+    private final int word;
+    private final long bit;
+    private int component = -1;
+    private int member;
+
+    MarkedMethods(long[][] marks, int key) {
+      this.marks = marks;
+      this.word = key >>> 6;
+      this.bit = 1L << key;
+      advance();
+    }
+
+    private void advance() {
+      if (component >= 0 && ++member < members[component].length) {
+        return;
+      }
+
+      member = 0;
+      do {
+        component++;
+      } while (component < members.length && (marks[component][word] & bit) == 0);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return component < members.length;
+    }
+
+    @Override
+    public KlassMethod next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      KlassMethod method = graph.node(members[component][member]);
+      advance();
+      return method;
+    }
+  }
+}
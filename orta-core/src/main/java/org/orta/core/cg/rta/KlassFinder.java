@@ -0,0 +1,75 @@
+package org.orta.core.cg.rta;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import org.orta.core.type.AnalysisSession;
+import org.orta.core.type.klass.Klass;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Finds recorded klasses by their names in a session. Lambda klasses are only synthesized while the bodies of their
+ * creators are parsed, so the first time a lambda klass is missing, the recorded methods that may create it are
+ * parsed and the klass is looked up again. Which methods may create it depends on what was recorded.
+ */
+final class KlassFinder {
+  private final AnalysisSession sess;
+  private final Runnable parseCreators;
+  private boolean parsed = false;
+
+  KlassFinder(AnalysisSession sess, Runnable parseCreators) {
+    this.sess = sess;
+    this.parseCreators = parseCreators;
+  }
+
+  static boolean isLambda(String name) {
+    return name.startsWith(AnalysisSession.LAMBDA_PREFIX);
+  }
+
+  @Nullable
+  Klass find(String name) {
+    if (!isLambda(name)) {
+      return sess.getOrCreateKlass(name);
+    }
+
+    Klass klass = sess.getLoadedKlass(name);
+    if (klass == null && !parsed) {
+      parsed = true;
+      parseCreators.run();
+      klass = sess.getLoadedKlass(name);
+    }
+
+    return klass;
+  }
+}
@@ -0,0 +1,114 @@
+package org.orta.core.cg.rta;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import org.orta.core.type.klass.KlassMethod;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * The methods and invocations of all the ancestors of a layer, keyed by the ids of the methods. A method is a bit
+ * of a paged bitmap, so looking up all the ancestors costs the same as looking up one of them. The invocations are
+ * not copied: an index keeps the frozen graph it adds to the index it extends, and an invocation is only looked up
+ * in those graphs if both of its methods are in the bitmap.
+ * <p>
+ * An index is never changed once it is built. The index of a child extends the index of its parent by the graph of
+ * the parent, and the children of a layer share it. The extended index shares the pages of the bitmap that the
+ * graph does not touch, so each index costs the pages of its own methods rather than a copy of its ancestors.
+ */
+final class LayerIndex {
+  private static final int PAGE_SHIFT = 12;
+  private static final int PAGE_WORDS = 1 << (PAGE_SHIFT - 6);
+  static final LayerIndex EMPTY = new LayerIndex(null, null, new long[0][]);
+
+  @Nullable
+  private final LayerIndex parent;
+  @Nullable
+  private final MethodGraph graph;
+  private final long[][] pages;  // or null if no method of the page is in the index
+
+  private LayerIndex(@Nullable LayerIndex parent, @Nullable MethodGraph graph, long[][] pages) {
+    this.parent = parent;
+    this.graph = graph;
+    this.pages = pages;
+  }
+
+  boolean containsNode(KlassMethod method) {
+    int id = method.getId();
+    int page = id >>> PAGE_SHIFT;
+    return page < pages.length && pages[page] != null
+            && (pages[page][(id >>> 6) & (PAGE_WORDS - 1)] & (1L << id)) != 0;
+  }
+
+  boolean containsEdge(KlassMethod caller, KlassMethod callee) {
+    if (!containsNode(caller) || !containsNode(callee)) {
+      return false;
+    }
+
+    for (LayerIndex index = this; index.graph != null; index = index.parent) {
+      if (index.graph.hasEdgeConnecting(caller, callee)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns a new index that also holds the methods and invocations of {@code graph}, which is frozen if it is not.
+   */
+  LayerIndex extend(MethodGraph graph) {
+    int pageCount = pages.length;
+    for (KlassMethod m : graph.nodes()) {
+      pageCount = Math.max(pageCount, (m.getId() >>> PAGE_SHIFT) + 1);
+    }
+
+    long[][] newPages = Arrays.copyOf(pages, pageCount);
+    boolean[] copied = new boolean[pageCount];
+    for (KlassMethod m : graph.nodes()) {
+      int id = m.getId();
+      int page = id >>> PAGE_SHIFT;
+      if (!copied[page]) {
+        newPages[page] = newPages[page] == null ? new long[PAGE_WORDS] : newPages[page].clone();
+        copied[page] = true;
+      }
+
+      newPages[page][(id >>> 6) & (PAGE_WORDS - 1)] |= 1L << id;
+    }
+
+    return new LayerIndex(this, graph.freeze(), newPages);
+  }
+}
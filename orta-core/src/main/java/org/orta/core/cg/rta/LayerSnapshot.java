@@ -0,0 +1,448 @@
+package org.orta.core.cg.rta;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import com.google.common.graph.EndpointPair;
+import org.orta.core.cg.impacts.DynamicImpactResolver;
+import org.orta.core.cg.impacts.DynamicInvocationImpact;
+import org.orta.core.cg.impacts.ImpactUnit;
+import org.orta.core.type.AnalysisSession;
+import org.orta.core.type.klass.FakeCallerKlass;
+import org.orta.core.type.klass.Klass;
+import org.orta.core.type.klass.KlassMethod;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The contents of one shared layer of an ordered RTA call graph, recorded by names so that it can be restored in a
+ * later analysis session instead of analyzing the impacts of the layer again.
+ * <p>
+ * A layer only depends on its parent layers, the impacts that were added to it, and the classes whose code was
+ * used while analyzing it. So it can be restored on top of the same parent layers, for the same impacts, as long as
+ * none of its contributing classes are changed.
+ */
+public final class LayerSnapshot {
+
+  private final String[] impacts;
+  private final String[] contributingKlasses;
+  private final String[] klasses;
+  private final int nodeCount;
+  private final int[] methodOwners;
+  private final String[] methodNames;
+  private final String[] methodDescs;
+  @Nullable
+  private final int[] edges;  // null if the layer does not record its edges
+  private final int[] instantiatedTypes;
+  private final int[] resolverOwners;
+  private final String[] resolverNames;
+  private final String[] resolverDescs;
+  private final int[] callers;
+
+  private LayerSnapshot(String[] impacts, String[] contributingKlasses, String[] klasses, int nodeCount,
+                        int[] methodOwners, String[] methodNames, String[] methodDescs, @Nullable int[] edges,
+                        int[] instantiatedTypes, int[] resolverOwners, String[] resolverNames,
+                        String[] resolverDescs, int[] callers) {
+    this.impacts = impacts;
+    this.contributingKlasses = contributingKlasses;
+    this.klasses = klasses;
+    this.nodeCount = nodeCount;
+    this.methodOwners = methodOwners;
+    this.methodNames = methodNames;
+    this.methodDescs = methodDescs;
+    this.edges = edges;
+    this.instantiatedTypes = instantiatedTypes;
+    this.resolverOwners = resolverOwners;
+    this.resolverNames = resolverNames;
+    this.resolverDescs = resolverDescs;
+    this.callers = callers;
+  }
+
+  private static String[] names(Collection<ImpactUnit> impacts) {
+    String[] names = new String[impacts.size()];
+    int idx = 0;
+    for (ImpactUnit u : impacts) {
+      names[idx++] = u.toString();
+    }
+
+    Arrays.sort(names);
+    return names;
+  }
+
+  private static boolean isSynthesized(Klass klass) {
+    return klass.getInternalName().equals(FakeCallerKlass.KLASSNAME)
+            || KlassFinder.isLambda(klass.getTypeName());
+  }
+
+  /**
+   * Returns the classes whose code decides the contents of the layer: the classes of its methods and instantiated
+   * types, the receiver types of its dynamic invocations, the types that its impacts refer to, and all of their
+   * super types.
+   */
+  private static String[] contributingKlasses(Set<Klass> used) {
+    Set<Klass> visited = new HashSet<>();
+    Deque<Klass> queue = new ArrayDeque<>(used);
+    List<String> names = new ArrayList<>();
+    while (!queue.isEmpty()) {
+      Klass klass = queue.removeFirst();
+      if (!visited.add(klass)) {
+        continue;
+      }
+
+      if (!isSynthesized(klass)) {
+        names.add(klass.getTypeName());
+      }
+
+      Klass superClass = klass.getSuperClass();
+      if (superClass != null) {
+        queue.addLast(superClass);
+      }
+
+      queue.addAll(klass.getInterfaces());
+    }
+
+    String[] result = names.toArray(new String[0]);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Records the layer that was built by adding {@code impacts} on top of its parents. Returns null if the layer
+   * holds a resolver that cannot be recorded by names.
+   */
+  @Nullable
+  static LayerSnapshot capture(OrderedRTACallGraph layer, Collection<ImpactUnit> impacts) {
+    OrderedPointsToGraph pag = (OrderedPointsToGraph) layer.getPAG();
+    MethodGraph graph = layer.getGraph();
+    Map<Klass, Integer> klassIds = new HashMap<>();
+    Map<KlassMethod, Integer> methodIds = new HashMap<>();
+    List<KlassMethod> methods = new ArrayList<>(graph.nodes());
+    for (KlassMethod m : methods) {
+      methodIds.put(m, methodIds.size());
+    }
+
+    Set<Klass> used = new HashSet<>();
+    for (ImpactUnit u : impacts) {
+      used.add(u.getType());
+    }
+
+    for (KlassMethod m : methods) {
+      used.add(m.getDeclaringClass());
+      for (ImpactUnit u : m.getBody()) {
+        used.add(u.getType());
+      }
+    }
+
+    int[] edges = null;
+    int idx = 0;
+    if (layer.recordsEdges()) {
+      edges = new int[graph.edges().size() * 2];
+      for (EndpointPair<KlassMethod> edge : graph.edges()) {
+        edges[idx++] = methodIds.get(edge.source());
+        edges[idx++] = methodIds.get(edge.target());
+      }
+    }
+
+    Set<Klass> instantiated = pag.getInstantiatedTypes();
+    int[] instantiatedTypes = new int[instantiated.size()];
+    idx = 0;
+    for (Klass type : instantiated) {
+      used.add(type);
+      instantiatedTypes[idx++] = klassIds.computeIfAbsent(type, x -> klassIds.size());
+    }
+
+    Map<DynamicImpactResolver, Collection<KlassMethod>> callerMap = pag.getCallers().asMap();
+    int resolverCount = callerMap.size();
+    int[] resolverOwners = new int[resolverCount];
+    String[] resolverNames = new String[resolverCount];
+    String[] resolverDescs = new String[resolverCount];
+    int[] callers = new int[pag.getCallers().size() * 2];
+    int resolverId = 0;
+    idx = 0;
+    for (Map.Entry<DynamicImpactResolver, Collection<KlassMethod>> entry : callerMap.entrySet()) {
+      if (!(entry.getKey() instanceof DynamicInvocationImpact)) {
+        return null;
+      }
+
+      DynamicInvocationImpact resolver = (DynamicInvocationImpact) entry.getKey();
+      Klass owner = resolver.getReceiverType();
+      used.add(owner);
+      resolverOwners[resolverId] = klassIds.computeIfAbsent(owner, x -> klassIds.size());
+      resolverNames[resolverId] = resolver.getName();
+      resolverDescs[resolverId] = resolver.getDescriptor().toString();
+      for (KlassMethod caller : entry.getValue()) {
+        callers[idx++] = resolverId;
+        if (caller == null) {
+          callers[idx++] = -1;
+        } else {
+          callers[idx++] = methodIds.computeIfAbsent(caller, x -> {
+            methods.add(x);
+            return methods.size() - 1;
+          });
+        }
+      }
+
+      resolverId++;
+    }
+
+    int[] methodOwners = new int[methods.size()];
+    String[] methodNames = new String[methods.size()];
+    String[] methodDescs = new String[methods.size()];
+    idx = 0;
+    for (KlassMethod m : methods) {
+      methodOwners[idx] = klassIds.computeIfAbsent(m.getDeclaringClass(), x -> klassIds.size());
+      methodNames[idx] = m.getMethodName();
+      methodDescs[idx] = m.getDescriptor().toString();
+      idx++;
+    }
+
+    String[] klasses = new String[klassIds.size()];
+    for (Map.Entry<Klass, Integer> entry : klassIds.entrySet()) {
+      klasses[entry.getValue()] = entry.getKey().getInternalName();
+    }
+
+    return new LayerSnapshot(names(impacts), contributingKlasses(used), klasses, graph.nodes().size(),
+            methodOwners, methodNames, methodDescs, edges, instantiatedTypes, resolverOwners, resolverNames,
+            resolverDescs, callers);
+  }
+
+  /**
+   * @return the names of the impacts that were added to the layer.
+   */
+  public List<String> getImpacts() {
+    return Collections.unmodifiableList(Arrays.asList(impacts));
+  }
+
+  /**
+   * Returns true if the layer is the result of adding the same impacts, and none of its contributing classes are
+   * changed. The parents of the layer should be checked by the caller.
+   */
+  public boolean isReusable(Collection<ImpactUnit> impacts, Predicate<String> unchanged) {
+    if (!Arrays.equals(this.impacts, names(impacts))) {
+      return false;
+    }
+
+    for (String name : contributingKlasses) {
+      if (!unchanged.test(name)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Puts the recorded contents into an empty layer. Returns false without modifying the layer if any of the
+   * recorded methods cannot be found in the session.
+   */
+  boolean restore(OrderedRTACallGraph layer, AnalysisSession sess) {
+    if (edges == null && layer.recordsEdges()) {
+      return false;
+    }
+
+    Resolver resolver = new Resolver(layer, sess);
+    KlassMethod[] methods = new KlassMethod[methodOwners.length];
+    for (int i = 0; i < methods.length; i++) {
+      Klass owner = resolver.klass(methodOwners[i]);
+      methods[i] = owner == null ? null
+              : owner.tryExactInvocation(methodNames[i], sess.getOrCreateMethodDescriptor(methodDescs[i]));
+      if (methods[i] == null) {
+        return false;
+      }
+
+    }
+
+    Klass[] instantiated = new Klass[instantiatedTypes.length];
+    for (int i = 0; i < instantiated.length; i++) {
+      instantiated[i] = resolver.klass(instantiatedTypes[i]);
+      if (instantiated[i] == null) {
+        return false;
+      }
+    }
+
+    DynamicImpactResolver[] resolvers = new DynamicImpactResolver[resolverOwners.length];
+    for (int i = 0; i < resolvers.length; i++) {
+      Klass owner = resolver.klass(resolverOwners[i]);
+      if (owner == null) {
+        return false;
+      }
+
+      resolvers[i] = sess.getDynamicInvocation(owner, resolverNames[i],
+              sess.getOrCreateMethodDescriptor(resolverDescs[i]));
+    }
+
+    MethodGraph graph = layer.getGraph();
+    for (int i = 0; i < nodeCount; i++) {
+      graph.addNode(methods[i]);
+    }
+
+    if (edges != null && layer.recordsEdges()) {
+      for (int i = 0; i < edges.length; i += 2) {
+        graph.putEdge(methods[edges[i]], methods[edges[i + 1]]);
+      }
+    }
+
+    OrderedPointsToGraph pag = (OrderedPointsToGraph) layer.getPAG();
+    for (Klass type : instantiated) {
+      pag.addInstantiatedType(type);
+    }
+
+    for (int i = 0; i < callers.length; i += 2) {
+      pag.addCaller(resolvers[callers[i]], callers[i + 1] < 0 ? null : methods[callers[i + 1]]);
+    }
+
+    return true;
+  }
+
+  public void writeTo(DataOutput out) throws IOException {
+    writeStrings(out, impacts);
+    writeStrings(out, contributingKlasses);
+    writeStrings(out, klasses);
+    out.writeInt(nodeCount);
+    writeInts(out, methodOwners);
+    writeStrings(out, methodNames);
+    writeStrings(out, methodDescs);
+    out.writeBoolean(edges != null);
+    if (edges != null) {
+      writeInts(out, edges);
+    }
+    writeInts(out, instantiatedTypes);
+    writeInts(out, resolverOwners);
+    writeStrings(out, resolverNames);
+    writeStrings(out, resolverDescs);
+    writeInts(out, callers);
+  }
+
+  public static LayerSnapshot readFrom(DataInput in) throws IOException {
+    return new LayerSnapshot(readStrings(in), readStrings(in), readStrings(in), in.readInt(), readInts(in),
+            readStrings(in), readStrings(in), in.readBoolean() ? readInts(in) : null, readInts(in), readInts(in),
+            readStrings(in), readStrings(in), readInts(in));
+  }
+
+  private static void writeStrings(DataOutput out, String[] values) throws IOException {
+    out.writeInt(values.length);
+    for (String value : values) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String[] readStrings(DataInput in) throws IOException {
+    String[] values = new String[in.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = in.readUTF();
+    }
+
+    return values;
+  }
+
+  private static void writeInts(DataOutput out, int[] values) throws IOException {
+    out.writeInt(values.length);
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static int[] readInts(DataInput in) throws IOException {
+    int[] values = new int[in.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = in.readInt();
+    }
+
+    return values;
+  }
+
+  /**
+   * Finds the recorded klasses in the session. A missing lambda klass may be created by the methods of the parents or
+   * by any recorded method of the layer, and the creator may be recorded after the methods of the lambda klass.
+   */
+  private final class Resolver {
+    private final OrderedRTACallGraph layer;
+    private final AnalysisSession sess;
+    private final Klass[] resolvedKlasses = new Klass[klasses.length];
+    private final KlassFinder finder;
+
+    Resolver(OrderedRTACallGraph layer, AnalysisSession sess) {
+      this.layer = layer;
+      this.sess = sess;
+      this.finder = new KlassFinder(sess, this::parseCreators);
+    }
+
+    private void parseCreators() {
+      Iterator<KlassMethod> parents = layer.nodes();
+      while (parents.hasNext()) {
+        parents.next().getBody();
+      }
+
+      for (int i = 0; i < methodOwners.length; i++) {
+        if (KlassFinder.isLambda(klasses[methodOwners[i]])) {
+          continue;
+        }
+
+        Klass owner = klass(methodOwners[i]);
+        KlassMethod m = owner == null ? null
+                : owner.tryExactInvocation(methodNames[i], sess.getOrCreateMethodDescriptor(methodDescs[i]));
+        if (m != null) {
+          m.getBody();
+        }
+      }
+    }
+
+    @Nullable
+    Klass klass(int id) {
+      Klass klass = resolvedKlasses[id];
+      if (klass == null) {
+        klass = finder.find(klasses[id]);
+        resolvedKlasses[id] = klass;
+      }
+
+      return klass;
+    }
+  }
+}
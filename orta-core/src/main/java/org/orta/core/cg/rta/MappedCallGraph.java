@@ -0,0 +1,512 @@
+package org.orta.core.cg.rta;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.collect.Sets.SetView;
+import com.google.common.graph.EndpointPair;
+import org.orta.core.cg.CallGraph;
+import org.orta.core.cg.impacts.ImpactUnit;
+import org.orta.core.type.AnalysisSession;
+import org.orta.core.type.klass.Klass;
+import org.orta.core.type.klass.KlassMethod;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A call graph that was exported to a file, mapped into memory and read in place.
+ * <p>
+ * The file holds a header, a table of the methods sorted by their names, and the successors and the predecessors of
+ * each method as CSR arrays, followed by a CRC32 of everything before it:
+ * <pre>
+ *   magic, version, node count, edge count, root index
+ *   symbol offsets[nodes + 1], successor offsets[nodes + 1], successors[edges],
+ *   predecessor offsets[nodes + 1], predecessors[edges], symbols, checksum
+ * </pre>
+ * A symbol is the internal name of the owner, the name and the descriptor of a method, separated by NUL characters.
+ * Only the methods that are asked for are resolved in the session, so a graph can be queried without analyzing
+ * anything again and without reading it onto the heap. The graph is read-only.
+ */
+public final class MappedCallGraph implements CallGraph {
+  private static final int MAGIC = 0x4F524347;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 20;
+
+  private final AnalysisSession sess;
+  private final int nodeCount;
+  private final int edgeCount;
+  private final int root;
+  private final IntBuffer symbolOffsets;
+  private final IntBuffer successorOffsets;
+  private final IntBuffer successors;
+  private final IntBuffer predecessorOffsets;
+  private final IntBuffer predecessors;
+  private final ByteBuffer symbols;
+  private final KlassMethod[] resolved;
+  private final BitSet unresolvable = new BitSet();
+  private final KlassFinder finder;
+
+  private MappedCallGraph(AnalysisSession sess, ByteBuffer buffer) throws IOException {
+    this.sess = sess;
+    this.finder = new KlassFinder(sess, this::parseCreators);
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IOException("Not a call graph of version " + VERSION);
+    }
+
+    this.nodeCount = buffer.getInt(8);
+    this.edgeCount = buffer.getInt(12);
+    this.root = buffer.getInt(16);
+    int position = HEADER_SIZE;
+    this.symbolOffsets = slice(buffer, position, nodeCount + 1).asIntBuffer();
+    position += (nodeCount + 1) * 4;
+    this.successorOffsets = slice(buffer, position, nodeCount + 1).asIntBuffer();
+    position += (nodeCount + 1) * 4;
+    this.successors = slice(buffer, position, edgeCount).asIntBuffer();
+    position += edgeCount * 4;
+    this.predecessorOffsets = slice(buffer, position, nodeCount + 1).asIntBuffer();
+    position += (nodeCount + 1) * 4;
+    this.predecessors = slice(buffer, position, edgeCount).asIntBuffer();
+    position += edgeCount * 4;
+    int symbolSize = symbolOffsets.get(nodeCount);
+    ByteBuffer view = buffer.duplicate();
+    view.position(position).limit(position + symbolSize);
+    this.symbols = view.slice();
+    if (position + symbolSize + 8 != buffer.limit()) {
+      throw new IOException("The size of the call graph does not match its header");
+    }
+
+    this.resolved = new KlassMethod[nodeCount];
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int position, int ints) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(position).limit(position + ints * 4);
+    return view.slice();
+  }
+
+  private static byte[] symbolOf(KlassMethod method) {
+    return (method.getDeclaringClass().getInternalName() + '\0' + method.getMethodName() + '\0'
+            + method.getDescriptor()).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static int compare(byte[] a, byte[] b) {
+    int length = Math.min(a.length, b.length);
+    for (int i = 0; i < length; i++) {
+      int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+
+    return a.length - b.length;
+  }
+
+  /**
+   * Writes the nodes and the edges of {@code graph}, which has to record its edges. {@code root} is the method the
+   * reachables of the loaded graph always start from, which is the fake caller of the session for RTA graphs.
+   */
+  public static void write(CallGraph graph, Path path, KlassMethod root) throws IOException {
+    Map<KlassMethod, byte[]> symbolOfMethod = new HashMap<>();
+    Iterator<KlassMethod> iter = graph.nodes();
+    while (iter.hasNext()) {
+      KlassMethod m = iter.next();
+      symbolOfMethod.computeIfAbsent(m, MappedCallGraph::symbolOf);
+    }
+
+    Set<EndpointPair<KlassMethod>> edges = graph.edges();
+    for (EndpointPair<KlassMethod> edge : edges) {
+      symbolOfMethod.computeIfAbsent(edge.source(), MappedCallGraph::symbolOf);
+      symbolOfMethod.computeIfAbsent(edge.target(), MappedCallGraph::symbolOf);
+    }
+
+    List<KlassMethod> methods = new ArrayList<>(symbolOfMethod.keySet());
+    methods.sort(Comparator.comparing(symbolOfMethod::get, MappedCallGraph::compare));
+    Map<KlassMethod, Integer> indexOf = new HashMap<>();
+    for (KlassMethod m : methods) {
+      indexOf.put(m, indexOf.size());
+    }
+
+    int n = methods.size();
+    int[] sources = new int[edges.size()];
+    int[] targets = new int[edges.size()];
+    int e = 0;
+    for (EndpointPair<KlassMethod> edge : edges) {
+      sources[e] = indexOf.get(edge.source());
+      targets[e] = indexOf.get(edge.target());
+      e++;
+    }
+
+    CRC32 crc = new CRC32();
+    try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(path)), crc))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(n);
+      out.writeInt(e);
+      out.writeInt(indexOf.getOrDefault(root, -1));
+
+      int offset = 0;
+      out.writeInt(0);
+      for (KlassMethod m : methods) {
+        offset += symbolOfMethod.get(m).length;
+        out.writeInt(offset);
+      }
+
+      writeAdjacency(out, n, sources, targets);
+      writeAdjacency(out, n, targets, sources);
+      for (KlassMethod m : methods) {
+        out.write(symbolOfMethod.get(m));
+      }
+
+      out.flush();
+      out.writeLong(crc.getValue());
+    }
+  }
+
+  private static void writeAdjacency(DataOutputStream out, int n, int[] from, int[] to) throws IOException {
+    int[] offsets = new int[n + 1];
+    for (int f : from) {
+      offsets[f + 1]++;
+    }
+
+    for (int i = 0; i < n; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+
+    int[] adjacency = new int[from.length];
+    int[] fill = Arrays.copyOf(offsets, n);
+    for (int i = 0; i < from.length; i++) {
+      adjacency[fill[from[i]]++] = to[i];
+    }
+
+    for (int i = 0; i < n; i++) {
+      Arrays.sort(adjacency, offsets[i], offsets[i + 1]);
+    }
+
+    for (int offset : offsets) {
+      out.writeInt(offset);
+    }
+
+    for (int target : adjacency) {
+      out.writeInt(target);
+    }
+  }
+
+  /**
+   * Maps a graph written by {@link #write(CallGraph, Path, KlassMethod)}, after checking its version and checksum.
+   * Its methods are resolved in {@code sess} when they are read.
+   */
+  public static MappedCallGraph load(Path path, AnalysisSession sess) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE + 8 || size > Integer.MAX_VALUE) {
+        throw new IOException("Unexpected size of a call graph: " + size);
+      }
+
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      ByteBuffer body = buffer.duplicate();
+      body.limit((int) size - 8);
+      CRC32 crc = new CRC32();
+      crc.update(body);
+      if (crc.getValue() != buffer.getLong((int) size - 8)) {
+        throw new IOException("The checksum of the call graph does not match: " + path);
+      }
+
+      return new MappedCallGraph(sess, buffer);
+    }
+  }
+
+  public int nodeCount() {
+    return nodeCount;
+  }
+
+  public int edgeCount() {
+    return edgeCount;
+  }
+
+  private byte[] symbolAt(int index) {
+    int start = symbolOffsets.get(index);
+    byte[] bytes = new byte[symbolOffsets.get(index + 1) - start];
+    ByteBuffer view = symbols.duplicate();
+    view.position(start);
+    view.get(bytes);
+    return bytes;
+  }
+
+  private int indexOf(KlassMethod method) {
+    byte[] key = symbolOf(method);
+    int low = 0;
+    int high = nodeCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compare(symbolAt(mid), key);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+
+    return -1;
+  }
+
+  private String[] partsOf(int index) {
+    return new String(symbolAt(index), StandardCharsets.UTF_8).split("\0", -1);
+  }
+
+  /**
+   * Parses the bodies of the methods of the graph, which are the possible creators of its lambda klasses.
+   */
+  private void parseCreators() {
+    for (int i = 0; i < nodeCount; i++) {
+      if (!KlassFinder.isLambda(partsOf(i)[0])) {
+        KlassMethod m = resolve(i);
+        if (m != null) {
+          m.getBody();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the method of a node, or null if it cannot be found in the session.
+   */
+  @Nullable
+  private synchronized KlassMethod resolve(int index) {
+    KlassMethod method = resolved[index];
+    if (method != null || unresolvable.get(index)) {
+      return method;
+    }
+
+    String[] parts = partsOf(index);
+    Klass owner = finder.find(parts[0]);
+    method = owner == null ? null : owner.tryExactInvocation(parts[1], sess.getOrCreateMethodDescriptor(parts[2]));
+    if (method == null) {
+      unresolvable.set(index);
+    } else {
+      resolved[index] = method;
+    }
+
+    return method;
+  }
+
+  private ImmutableSet<KlassMethod> resolveAll(IntBuffer offsets, IntBuffer adjacency, int index) {
+    ImmutableSet.Builder<KlassMethod> builder = ImmutableSet.builder();
+    for (int i = offsets.get(index); i < offsets.get(index + 1); i++) {
+      KlassMethod m = resolve(adjacency.get(i));
+      if (m != null) {
+        builder.add(m);
+      }
+    }
+
+    return builder.build();
+  }
+
+  @Override
+  public SetView<KlassMethod> getCallersOf(KlassMethod callee) {
+    int index = indexOf(callee);
+    ImmutableSet<KlassMethod> callers = index < 0 ? ImmutableSet.of()
+            : resolveAll(predecessorOffsets, predecessors, index);
+    return Sets.union(callers, ImmutableSet.of());
+  }
+
+  @Override
+  public Set<KlassMethod> successors(KlassMethod currentNode) {
+    int index = indexOf(currentNode);
+    return index < 0 ? ImmutableSet.of() : resolveAll(successorOffsets, successors, index);
+  }
+
+  @Override
+  public Iterator<KlassMethod> nodes() {
+    return new Iterator<KlassMethod>() {
+      private int index = -1;
+      @Nullable
+      private KlassMethod next = advance();
+
+      @Nullable
+      private KlassMethod advance() {
+        while (++index < nodeCount) {
+          KlassMethod m = resolve(index);
+          if (m != null) {
+            return m;
+          }
+        }
+
+        return null;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public KlassMethod next() {
+        KlassMethod m = next;
+        if (m == null) {
+          throw new NoSuchElementException();
+        }
+
+        next = advance();
+        return m;
+      }
+    };
+  }
+
+  /**
+   * Returns the edges between the methods that can be resolved. Unlike the other queries, this reads the whole
+   * graph onto the heap.
+   */
+  @Override
+  public SetView<EndpointPair<KlassMethod>> edges() {
+    ImmutableSet.Builder<EndpointPair<KlassMethod>> builder = ImmutableSet.builder();
+    for (int source = 0; source < nodeCount; source++) {
+      KlassMethod caller = resolve(source);
+      if (caller == null) {
+        continue;
+      }
+
+      for (int i = successorOffsets.get(source); i < successorOffsets.get(source + 1); i++) {
+        KlassMethod callee = resolve(successors.get(i));
+        if (callee != null) {
+          builder.add(EndpointPair.ordered(caller, callee));
+        }
+      }
+    }
+
+    return Sets.union(builder.build(), ImmutableSet.of());
+  }
+
+  @Override
+  public Iterable<KlassMethod> getReachables(KlassMethod node) {
+    return getReachables(ImmutableSet.of(node));
+  }
+
+  /**
+   * Traverses the graph from {@code klassMethods} and the root of the graph over the mapped arrays. Only the
+   * reached methods are resolved.
+   */
+  @Override
+  public Iterable<KlassMethod> getReachables(Set<KlassMethod> klassMethods) {
+    BitSet visited = new BitSet(nodeCount);
+    int[] queue = new int[nodeCount];
+    int tail = 0;
+    if (root >= 0) {
+      visited.set(root);
+      queue[tail++] = root;
+    }
+
+    for (KlassMethod m : klassMethods) {
+      int index = indexOf(m);
+      if (index >= 0 && !visited.get(index)) {
+        visited.set(index);
+        queue[tail++] = index;
+      }
+    }
+
+    for (int head = 0; head < tail; head++) {
+      int node = queue[head];
+      for (int i = successorOffsets.get(node); i < successorOffsets.get(node + 1); i++) {
+        int succ = successors.get(i);
+        if (!visited.get(succ)) {
+          visited.set(succ);
+          queue[tail++] = succ;
+        }
+      }
+    }
+
+    ImmutableList.Builder<KlassMethod> builder = ImmutableList.builder();
+    for (int i = 0; i < tail; i++) {
+      KlassMethod m = resolve(queue[i]);
+      if (m != null) {
+        builder.add(m);
+      }
+    }
+
+    return builder.build();
+  }
+
+  @Override
+  public void addEntry(KlassMethod m) {
+    throw new UnsupportedOperationException("A mapped call graph is read-only");
+  }
+
+  @Override
+  public boolean markVisited(KlassMethod invoked) {
+    throw new UnsupportedOperationException("A mapped call graph is read-only");
+  }
+
+  @Override
+  public void registerInvocation(KlassMethod caller, KlassMethod invoked) {
+    throw new UnsupportedOperationException("A mapped call graph is read-only");
+  }
+
+  @Override
+  public void addImpactUnit(ImpactUnit u) {
+    throw new UnsupportedOperationException("A mapped call graph is read-only");
+  }
+
+  @Override
+  public void registerImplicitInvocation(KlassMethod invoked) {
+    throw new UnsupportedOperationException("A mapped call graph is read-only");
+  }
+}
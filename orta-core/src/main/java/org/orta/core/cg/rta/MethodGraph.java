@@ -0,0 +1,418 @@
+package org.orta.core.cg.rta;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
+import com.google.common.graph.AbstractGraph;
+import com.google.common.graph.ElementOrder;
+import org.orta.core.type.klass.KlassMethod;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A directed call graph that stores the methods in an array and the edges between their indexes, instead of
+ * allocating objects for each node and edge. The methods are found by their ids through an open-addressing table.
+ * <p>
+ * While the graph is constructed, the adjacency of each method is a growable int array and the edges are also
+ * kept in a long-encoded hash set. Once the graph is frozen, the adjacency is packed into sorted CSR arrays, the
+ * hash set is dropped, and the graph cannot be changed anymore. A layer is frozen when a graph is created on top
+ * of it, so frozen graphs can be read by several threads.
+ */
+final class MethodGraph extends AbstractGraph<KlassMethod> {
+  private static final int[] EMPTY = new int[0];
+
+  private KlassMethod[] nodes = new KlassMethod[8];
+  private int nodeCount;
+  private int[] slots = new int[16];  // index + 1 of the method, or 0 if empty
+  private int edgeCount;
+
+  private int[][] successors = new int[8][];
+  private int[] successorCounts = new int[8];
+  private int[][] predecessors = new int[8][];
+  private int[] predecessorCounts = new int[8];
+  private long[] edgeSlots = new long[16];  // encoded edge, or 0 if empty
+
+  private boolean frozen;
+  private int[] successorOffsets;
+  private int[] successorTargets;
+  private int[] predecessorOffsets;
+  private int[] predecessorTargets;
+
+  private static int mix(int x) {
+    x *= 0x9E3779B9;
+    return x ^ (x >>> 16);
+  }
+
+  private static int mix(long x) {
+    return mix((int) (x ^ (x >>> 32)));
+  }
+
+  private static long encode(int source, int target) {
+    return ((long) (source + 1) << 32) | target;
+  }
+
+  int nodeCount() {
+    return nodeCount;
+  }
+
+  KlassMethod node(int index) {
+    return nodes[index];
+  }
+
+  int successorCount(int index) {
+    return frozen ? successorOffsets[index + 1] - successorOffsets[index] : successorCounts[index];
+  }
+
+  int successor(int index, int i) {
+    return frozen ? successorTargets[successorOffsets[index] + i] : successors[index][i];
+  }
+
+  int indexOf(KlassMethod method) {
+    int id = method.getId();
+    int mask = slots.length - 1;
+    for (int pos = mix(id) & mask; ; pos = (pos + 1) & mask) {
+      int slot = slots[pos];
+      if (slot == 0) {
+        return -1;
+      } else if (nodes[slot - 1] == method) {
+        return slot - 1;
+      }
+    }
+  }
+
+  boolean containsNode(KlassMethod method) {
+    return indexOf(method) >= 0;
+  }
+
+  boolean addNode(KlassMethod method) {
+    return indexOf(method) < 0 && add(method) >= 0;
+  }
+
+  /**
+   * Adds the edge and its endpoints. Returns false if the edge was already present.
+   */
+  boolean putEdge(KlassMethod source, KlassMethod target) {
+    int s = indexOf(source);
+    if (s < 0) {
+      s = add(source);
+    }
+
+    int t = indexOf(target);
+    if (t < 0) {
+      t = add(target);
+    }
+
+    if (!addEdge(encode(s, t))) {
+      return false;
+    }
+
+    successors[s] = append(successors[s], successorCounts[s]++, t);
+    predecessors[t] = append(predecessors[t], predecessorCounts[t]++, s);
+    edgeCount++;
+    return true;
+  }
+
+  /**
+   * Packs the adjacency into CSR arrays. The graph cannot be changed afterwards.
+   */
+  synchronized MethodGraph freeze() {
+    if (frozen) {
+      return this;
+    }
+
+    successorOffsets = new int[nodeCount + 1];
+    successorTargets = pack(successors, successorCounts, successorOffsets);
+    predecessorOffsets = new int[nodeCount + 1];
+    predecessorTargets = pack(predecessors, predecessorCounts, predecessorOffsets);
+    nodes = Arrays.copyOf(nodes, nodeCount);
+    successors = null;
+    successorCounts = null;
+    predecessors = null;
+    predecessorCounts = null;
+    edgeSlots = null;
+    frozen = true;
+    return this;
+  }
+
+  private int[] pack(int[][] adjacency, int[] counts, int[] offsets) {
+    int[] targets = new int[edgeCount];
+    int offset = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      offsets[i] = offset;
+      if (counts[i] > 0) {
+        System.arraycopy(adjacency[i], 0, targets, offset, counts[i]);
+        Arrays.sort(targets, offset, offset + counts[i]);
+        offset += counts[i];
+      }
+    }
+
+    offsets[nodeCount] = offset;
+    return targets;
+  }
+
+  private int add(KlassMethod method) {
+    Preconditions.checkState(!frozen, "The graph is frozen");
+    int index = nodeCount++;
+    if (index == nodes.length) {
+      int capacity = index * 2;
+      nodes = Arrays.copyOf(nodes, capacity);
+      successors = Arrays.copyOf(successors, capacity);
+      successorCounts = Arrays.copyOf(successorCounts, capacity);
+      predecessors = Arrays.copyOf(predecessors, capacity);
+      predecessorCounts = Arrays.copyOf(predecessorCounts, capacity);
+    }
+
+    nodes[index] = method;
+    if (nodeCount * 2 > slots.length) {
+      slots = new int[slots.length * 2];
+      for (int i = 0; i < nodeCount; i++) {
+        insertSlot(i);
+      }
+    } else {
+      insertSlot(index);
+    }
+
+    return index;
+  }
+
+  private void insertSlot(int index) {
+    int mask = slots.length - 1;
+    int pos = mix(nodes[index].getId()) & mask;
+    while (slots[pos] != 0) {
+      pos = (pos + 1) & mask;
+    }
+
+    slots[pos] = index + 1;
+  }
+
+  private boolean addEdge(long edge) {
+    if ((edgeCount + 1) * 2 > edgeSlots.length) {
+      long[] old = edgeSlots;
+      edgeSlots = new long[old.length * 2];
+      for (long e : old) {
+        if (e != 0) {
+          insertEdge(e);
+        }
+      }
+    }
+
+    return insertEdge(edge);
+  }
+
+  private boolean insertEdge(long edge) {
+    int mask = edgeSlots.length - 1;
+    for (int pos = mix(edge) & mask; ; pos = (pos + 1) & mask) {
+      long slot = edgeSlots[pos];
+      if (slot == 0) {
+        edgeSlots[pos] = edge;
+        return true;
+      } else if (slot == edge) {
+        return false;
+      }
+    }
+  }
+
+  private boolean containsEdge(long edge) {
+    int mask = edgeSlots.length - 1;
+    for (int pos = mix(edge) & mask; ; pos = (pos + 1) & mask) {
+      long slot = edgeSlots[pos];
+      if (slot == 0) {
+        return false;
+      } else if (slot == edge) {
+        return true;
+      }
+    }
+  }
+
+  private static int[] append(int[] array, int size, int value) {
+    if (array == null) {
+      array = new int[2];
+    } else if (size == array.length) {
+      array = Arrays.copyOf(array, size * 2);
+    }
+
+    array[size] = value;
+    return array;
+  }
+
+  @Override
+  public boolean hasEdgeConnecting(KlassMethod source, KlassMethod target) {
+    int s = indexOf(source);
+    if (s < 0) {
+      return false;
+    }
+
+    int t = indexOf(target);
+    if (t < 0) {
+      return false;
+    }
+
+    if (frozen) {
+      return Arrays.binarySearch(successorTargets, successorOffsets[s], successorOffsets[s + 1], t) >= 0;
+    }
+
+    return containsEdge(encode(s, t));
+  }
+
+  @Override
+  public Set<KlassMethod> nodes() {
+    return new IndexSet() {
+      @Override
+      public boolean contains(Object o) {
+        return o instanceof KlassMethod && containsNode((KlassMethod) o);
+      }
+
+      @Override
+      public int size() {
+        return nodeCount;
+      }
+
+      @Override
+      int index(int i) {
+        return i;
+      }
+    };
+  }
+
+  @Override
+  public Set<KlassMethod> successors(KlassMethod node) {
+    int index = indexOf(node);
+    if (index < 0) {
+      return Collections.emptySet();
+    }
+
+    return new IndexSet() {
+      @Override
+      public boolean contains(Object o) {
+        return o instanceof KlassMethod && hasEdgeConnecting(node, (KlassMethod) o);
+      }
+
+      @Override
+      public int size() {
+        return successorCount(index);
+      }
+
+      @Override
+      int index(int i) {
+        return successor(index, i);
+      }
+    };
+  }
+
+  @Override
+  public Set<KlassMethod> predecessors(KlassMethod node) {
+    int index = indexOf(node);
+    if (index < 0) {
+      return Collections.emptySet();
+    }
+
+    return new IndexSet() {
+      @Override
+      public boolean contains(Object o) {
+        return o instanceof KlassMethod && hasEdgeConnecting((KlassMethod) o, node);
+      }
+
+      @Override
+      public int size() {
+        return frozen ? predecessorOffsets[index + 1] - predecessorOffsets[index] : predecessorCounts[index];
+      }
+
+      @Override
+      int index(int i) {
+        return frozen ? predecessorTargets[predecessorOffsets[index] + i] : predecessors[index][i];
+      }
+    };
+  }
+
+  @Override
+  public Set<KlassMethod> adjacentNodes(KlassMethod node) {
+    return Sets.union(successors(node), predecessors(node));
+  }
+
+  @Override
+  public boolean isDirected() {
+    return true;
+  }
+
+  @Override
+  public boolean allowsSelfLoops() {
+    return true;
+  }
+
+  @Override
+  public ElementOrder<KlassMethod> nodeOrder() {
+    return ElementOrder.insertion();
+  }
+
+  @Override
+  protected long edgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * A read-only view of methods given by their indexes.
+   */
+  private abstract class IndexSet extends AbstractSet<KlassMethod> {
+
+    abstract int index(int i);
+
+    @Override
+    public Iterator<KlassMethod> iterator() {
+      return new Iterator<KlassMethod>() {
+        private int next;
+
+        @Override
+        public boolean hasNext() {
+          return next < size();
+        }
+
+        @Override
+        public KlassMethod next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+
+          return nodes[index(next++)];
+        }
+      };
+    }
+  }
+}
@@ -47,9 +47,7 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 public class OrderedPointsToGraph implements PointsToGraph {
@@ -62,6 +60,12 @@ public class OrderedPointsToGraph implements PointsToGraph {
   @NonNull
   private final Set<Klass> instantiatedTypes = new HashSet<>();
   @NonNull
+  private final SetMultimap<Klass, DynamicImpactResolver> resolversByReceiver = MultimapBuilder.hashKeys()
+          .hashSetValues().build();
+  @NonNull
+  private final SetMultimap<Klass, Klass> instantiatedBySupertype = MultimapBuilder.hashKeys()
+          .hashSetValues().build();
+  @NonNull
   private final OrderedPointsToGraph[] parentGraphs;
   private final OrderedPointsToGraph[] allGraphs;
 
@@ -85,6 +89,35 @@ public class OrderedPointsToGraph implements PointsToGraph {
     this.allGraphs = new OrderedPointsToGraph[]{this};
   }
 
+  SetMultimap<DynamicImpactResolver, KlassMethod> getCallers() {
+    return callers;
+  }
+
+  Set<Klass> getInstantiatedTypes() {
+    return instantiatedTypes;
+  }
+
+  boolean addCaller(DynamicImpactResolver resolver, KlassMethod caller) {
+    if (!callers.put(resolver, caller)) {
+      return false;
+    }
+
+    resolversByReceiver.put(resolver.getReceiverType(), resolver);
+    return true;
+  }
+
+  boolean addInstantiatedType(Klass type) {
+    if (!instantiatedTypes.add(type)) {
+      return false;
+    }
+
+    for (Klass supertype : type.getSupertypes()) {
+      instantiatedBySupertype.put(supertype, type);
+    }
+
+    return true;
+  }
+
   public Visitor createVisitor(CallGraph cg, KlassMethod fakeRoot) {
     Visitor visitor = new Visitor(cg);
     visitor.acceptEntryMethod(fakeRoot);
@@ -106,18 +139,15 @@ public class OrderedPointsToGraph implements PointsToGraph {
         }
       }
 
-      return !callers.put(resolver, caller);
+      return !addCaller(resolver, caller);
     }
 
     @Override
     protected void handleNewlyAddedResolver(DynamicImpactResolver resolver) {
       Klass resolverType = resolver.getReceiverType();
-
       for (OrderedPointsToGraph cg : allGraphs) {
-        for (Klass type : cg.instantiatedTypes) {
-          if (type.inherits(resolverType)) {
-            resolveInvocation(type, resolver);
-          }
+        for (Klass type : cg.instantiatedBySupertype.get(resolverType)) {
+          resolveInvocation(type, resolver);
         }
       }
     }
@@ -129,29 +159,17 @@ public class OrderedPointsToGraph implements PointsToGraph {
         }
       }
 
-      return !instantiatedTypes.add(type);
+      return !addInstantiatedType(type);
     }
 
     @Override
     protected void handleNewlyInstantiated(Klass type) {
-      Set<Klass> rejected = new HashSet<>();
-      Set<Klass> accepted = new HashSet<>();
+      ImmutableSet<Klass> supertypes = type.getSupertypes();
       for (OrderedPointsToGraph cg : allGraphs) {
-        for (Map.Entry<DynamicImpactResolver, Collection<KlassMethod>> entry : cg.callers.asMap().entrySet()) {
-          DynamicImpactResolver resolver = entry.getKey();
-          Klass resolverType = resolver.getReceiverType();
-          if (!accepted.contains(resolverType)) {
-            if (rejected.contains(resolverType)) {
-              continue;
-            } else if (!type.inherits(resolverType)) {
-              rejected.add(resolverType);
-              continue;
-            } else {
-              accepted.add(resolverType);
-            }
+        for (Klass supertype : supertypes) {
+          for (DynamicImpactResolver resolver : cg.resolversByReceiver.get(supertype)) {
+            resolveInvocation(type, resolver, cg.callers.get(resolver));
           }
-
-          resolveInvocation(type, resolver, entry.getValue());
         }
       }
     }
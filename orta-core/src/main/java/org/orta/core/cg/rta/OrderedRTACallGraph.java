@@ -39,7 +39,6 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Sets.SetView;
 import com.google.common.graph.EndpointPair;
-import com.google.common.graph.MutableGraph;
 import org.orta.core.cg.OrderedCallGraph;
 import org.orta.core.type.klass.KlassMethod;
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -48,55 +47,65 @@ import java.util.Iterator;
 
 class OrderedRTACallGraph extends RTACallGraph implements OrderedCallGraph {
 
-  final MutableGraph<KlassMethod>[] parents;
+  final MethodGraph[] parents;
+  private final LayerIndex ancestors;
+  private LayerIndex childIndex;
 
   @SuppressWarnings({"initialization", "CopyConstructorMissesField"})
   OrderedRTACallGraph(
           OrderedRTACallGraph parent, KlassMethod fakeRoot) {
-    super(new OrderedPointsToGraph((OrderedPointsToGraph) parent.getPAG()), fakeRoot);
+    super(new OrderedPointsToGraph((OrderedPointsToGraph) parent.getPAG()), fakeRoot, parent.recordsEdges());
     if (parent.isUpdated()) {
       int parentSize = parent.parents.length;
-      parents = new MutableGraph[parentSize + 1];
+      parents = new MethodGraph[parentSize + 1];
       System.arraycopy(parent.parents, 0, parents, 0, parentSize);
-      parents[parentSize] = parent.getGraph();
+      parents[parentSize] = parent.getGraph().freeze();
+      ancestors = parent.childIndex();
     } else {
       parents = parent.parents;
+      ancestors = parent.ancestors;
     }
   }
 
   @SuppressWarnings("initialization")
-  OrderedRTACallGraph(KlassMethod fakeRoot) {
-    super(new OrderedPointsToGraph(), fakeRoot);
-    this.parents = new MutableGraph[0];
+  OrderedRTACallGraph(KlassMethod fakeRoot, boolean recordsEdges) {
+    super(new OrderedPointsToGraph(), fakeRoot, recordsEdges);
+    this.parents = new MethodGraph[0];
+    this.ancestors = LayerIndex.EMPTY;
   }
 
-  @Override
-  public boolean markVisited(@NonNull KlassMethod method) {
-    for (MutableGraph<KlassMethod> parent : parents) {
-      if (parent.nodes().contains(method)) {
-        return false;
-      }
+  /**
+   * Returns the index of the ancestors of the children of this layer, which is built once and shared by them.
+   */
+  private synchronized LayerIndex childIndex() {
+    if (childIndex == null) {
+      childIndex = ancestors.extend(getGraph());
     }
 
-    return super.markVisited(method);
+    return childIndex;
+  }
+
+  @Override
+  public boolean markVisited(@NonNull KlassMethod method) {
+    return !ancestors.containsNode(method) && super.markVisited(method);
   }
 
   @Override
   public void registerInvocation(@NonNull KlassMethod caller, @NonNull KlassMethod callee) {
-    for (MutableGraph<KlassMethod> parent : parents) {
-      if (parent.hasEdgeConnecting(caller, callee)) {
-        return;
-      }
+    if (recordsEdges() && !ancestors.containsEdge(caller, callee)) {
+      super.registerInvocation(caller, callee);
     }
-
-    super.registerInvocation(caller, callee);
   }
 
   @Override
   public SetView<KlassMethod> getCallersOf(KlassMethod callee) {
     SetView<KlassMethod> view = super.getCallersOf(callee);
-    for (MutableGraph<KlassMethod> parent : parents) {
-      view = Sets.union(view, parent.predecessors(callee));
+    if (ancestors.containsNode(callee)) {
+      for (MethodGraph parent : parents) {
+        if (parent.containsNode(callee)) {
+          view = Sets.union(view, parent.predecessors(callee));
+        }
+      }
     }
 
     return view;
@@ -117,7 +126,7 @@ class OrderedRTACallGraph extends RTACallGraph implements OrderedCallGraph {
   @Override
   public SetView<EndpointPair<KlassMethod>> edges() {
     SetView<EndpointPair<KlassMethod>> view = super.edges();
-    for (MutableGraph<KlassMethod> parent : parents) {
+    for (MethodGraph parent : parents) {
       view = Sets.union(view, parent.edges());
     }
 
@@ -0,0 +1,249 @@
+package org.orta.core.cg.rta;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import org.orta.core.cg.impacts.DynamicImpactResolver;
+import org.orta.core.cg.impacts.ImpactUnit;
+import org.orta.core.cg.impacts.ImpactVisitor;
+import org.orta.core.type.TypeHelper;
+import org.orta.core.type.klass.Klass;
+import org.orta.core.type.klass.KlassMethod;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Computes the same fixpoint as {@link SinglePointsToGraph} with the bodies of the methods visited by several
+ * threads. Each newly visited method is a task, and the points-to sets are concurrent sets. A type and a resolver
+ * that are added at the same time both publish themselves before looking up the other, so at least one of the
+ * threads resolves the invocation; resolving it twice is harmless.
+ * <p>
+ * The result is copied into a {@link RTACallGraph} whose points-to graph holds the same callers and types, so that
+ * impacts added later are resolved as if the graph was built on a single thread.
+ */
+final class ParallelRTA {
+  private final KlassMethod fakeRoot;
+  private final Set<KlassMethod> visited = ConcurrentHashMap.newKeySet();
+  private final Map<KlassMethod, Set<KlassMethod>> successors = new ConcurrentHashMap<>();
+  private final Set<Klass> instantiatedTypes = ConcurrentHashMap.newKeySet();
+  private final Map<Klass, Set<Klass>> instantiatedBySupertype = new ConcurrentHashMap<>();
+  private final Map<DynamicImpactResolver, Set<KlassMethod>> callers = new ConcurrentHashMap<>();
+  private final Set<DynamicImpactResolver> implicitResolvers = ConcurrentHashMap.newKeySet();
+  private final Map<Klass, Set<DynamicImpactResolver>> resolversByReceiver = new ConcurrentHashMap<>();
+
+  private ParallelRTA(KlassMethod fakeRoot) {
+    this.fakeRoot = fakeRoot;
+  }
+
+  static RTACallGraph build(KlassMethod fakeRoot, Collection<ImpactUnit> impacts, Collection<KlassMethod> entries,
+                            int parallelism) {
+    ParallelRTA rta = new ParallelRTA(fakeRoot);
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(rta.new RootTask(impacts, entries));
+    } finally {
+      pool.shutdown();
+    }
+
+    return rta.toCallGraph();
+  }
+
+  private static <K, V> Set<V> valuesOf(Map<K, Set<V>> map, K key) {
+    return map.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+  }
+
+  private RTACallGraph toCallGraph() {
+    SinglePointsToGraph pag = new SinglePointsToGraph();
+    for (Klass type : instantiatedTypes) {
+      pag.addInstantiatedType(type);
+    }
+
+    for (Map.Entry<DynamicImpactResolver, Set<KlassMethod>> entry : callers.entrySet()) {
+      for (KlassMethod caller : entry.getValue()) {
+        pag.addCaller(entry.getKey(), caller);
+      }
+    }
+
+    for (DynamicImpactResolver resolver : implicitResolvers) {
+      pag.addCaller(resolver, null);
+    }
+
+    RTACallGraph cg = new RTACallGraph(pag, fakeRoot);
+    MethodGraph graph = cg.getGraph();
+    graph.addNode(fakeRoot);
+    for (KlassMethod method : visited) {
+      graph.addNode(method);
+    }
+
+    for (Map.Entry<KlassMethod, Set<KlassMethod>> entry : successors.entrySet()) {
+      for (KlassMethod callee : entry.getValue()) {
+        graph.putEdge(entry.getKey(), callee);
+      }
+    }
+
+    return cg;
+  }
+
+  private abstract class Task extends CountedCompleter<Void> implements ImpactVisitor {
+    @Nullable
+    final KlassMethod caller;
+
+    Task(@Nullable Task parent, @Nullable KlassMethod caller) {
+      super(parent);
+      this.caller = caller;
+    }
+
+    private void visit(KlassMethod method) {
+      if (visited.add(method)) {
+        addToPendingCount(1);
+        new MethodTask(this, method).fork();
+      }
+    }
+
+    private void addInvocation(@Nullable KlassMethod from, @Nullable KlassMethod invoked) {
+      if (invoked == null) {
+        return;
+      }
+
+      visit(invoked);
+      valuesOf(successors, from == null ? fakeRoot : from).add(invoked);
+    }
+
+    @Override
+    public void instantiateType(ImpactUnit unit, Klass type) {
+      if (!instantiatedTypes.add(type)) {
+        return;
+      }
+
+      for (Klass supertype : type.getSupertypes()) {
+        valuesOf(instantiatedBySupertype, supertype).add(type);
+      }
+
+      if (!type.isConcrete()) {
+        TypeHelper.resolveInvocableMethods(type).forEach(method -> implicitInvoke(unit, method));
+        return;
+      }
+
+      for (Klass supertype : type.getSupertypes()) {
+        for (DynamicImpactResolver resolver : resolversByReceiver.getOrDefault(supertype, Collections.emptySet())) {
+          if (implicitResolvers.contains(resolver)) {
+            addInvocation(null, resolver.resolveCallee(type));
+          }
+
+          for (KlassMethod from : callers.getOrDefault(resolver, Collections.emptySet())) {
+            addInvocation(from, resolver.resolveCallee(type, from));
+          }
+        }
+      }
+    }
+
+    @Override
+    public void registerInvoked(ImpactUnit unit, KlassMethod callee) {
+      addInvocation(caller, callee);
+    }
+
+    @Override
+    public void addDynamicImpact(ImpactUnit u, DynamicImpactResolver resolver) {
+      boolean added = caller == null ? implicitResolvers.add(resolver) : valuesOf(callers, resolver).add(caller);
+      if (!added) {
+        return;
+      }
+
+      Klass receiver = resolver.getReceiverType();
+      valuesOf(resolversByReceiver, receiver).add(resolver);
+      for (Klass type : instantiatedBySupertype.getOrDefault(receiver, Collections.emptySet())) {
+        addInvocation(caller, resolver.resolveCallee(type, caller));
+      }
+    }
+
+    @Override
+    public void implicitInvoke(ImpactUnit unit, KlassMethod method) {
+      addInvocation(null, method);
+    }
+
+    @Override
+    public void acceptEntryMethod(KlassMethod m) {
+      visit(m);
+    }
+
+    @Override
+    public void acceptImpactUnit(ImpactUnit impactUnit) {
+      impactUnit.apply(this);
+    }
+  }
+
+  private final class RootTask extends Task {
+    private final Collection<ImpactUnit> impacts;
+    private final Collection<KlassMethod> entries;
+
+    RootTask(Collection<ImpactUnit> impacts, Collection<KlassMethod> entries) {
+      super(null, null);
+      this.impacts = impacts;
+      this.entries = entries;
+    }
+
+    @Override
+    public void compute() {
+      acceptEntryMethod(fakeRoot);
+      for (ImpactUnit u : impacts) {
+        acceptImpactUnit(u);
+      }
+
+      for (KlassMethod m : entries) {
+        acceptEntryMethod(m);
+      }
+
+      tryComplete();
+    }
+  }
+
+  private final class MethodTask extends Task {
+    MethodTask(Task parent, KlassMethod method) {
+      super(parent, method);
+    }
+
+    @Override
+    public void compute() {
+      caller.getBody().forEach(u -> u.apply(this));
+      tryComplete();
+    }
+  }
+}
@@ -45,6 +45,7 @@ import org.orta.core.cg.impacts.ImpactUnit;
 import org.orta.core.type.AnalysisSession;
 import org.orta.core.type.klass.Klass;
 import org.orta.core.type.klass.KlassMethod;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.util.Collection;
 import java.util.Set;
@@ -55,12 +56,28 @@ import java.util.function.Function;
  */
 public class RTA implements OrderedCallGraphAlgorithm, SimpleCallGraphAlgorithm {
 
-  private static final RTA strategy = new RTA();
+  private static final RTA strategy = new RTA(true);
+  private static final RTA reachability = new RTA(false);
+
+  private final boolean recordsEdges;
+
+  private RTA(boolean recordsEdges) {
+    this.recordsEdges = recordsEdges;
+  }
 
   public static RTA get() {
     return strategy;
   }
 
+  /**
+   * Returns the RTA that only keeps the reached methods of the graphs it creates. The types and the resolvers are
+   * tracked as usual, but the edges are not stored, which saves the memory and time of recording them when only
+   * {@link CallGraph#nodes()} is used.
+   */
+  public static RTA reachabilityOnly() {
+    return reachability;
+  }
+
   @Override
   public EntryPAG createPAGForJVM(AnalysisSession sess) {
     return new RTAEntryPAG(sess);
@@ -74,7 +91,7 @@ public class RTA implements OrderedCallGraphAlgorithm, SimpleCallGraphAlgorithm
 
   @Override
   public OrderedRTACallGraph createOrderedCallGraph(AnalysisSession sess) {
-    return new OrderedRTACallGraph(sess.getFakeCaller());
+    return new OrderedRTACallGraph(sess.getFakeCaller(), recordsEdges);
   }
 
   @Override
@@ -83,16 +100,40 @@ public class RTA implements OrderedCallGraphAlgorithm, SimpleCallGraphAlgorithm
     return new OrderedRTACallGraph((OrderedRTACallGraph) parent, fakeRoot);
   }
 
-  @Override
-  public CallGraph createCallGraph(AnalysisSession sess, Collection<Klass> instantiatedKlasses,
-                                   Collection<KlassMethod> entryMethods) {
-    RTACallGraph cg = new RTACallGraph(sess.getFakeCaller());
+  /**
+   * Records the contents that were added to the layer by {@code impacts}, so that the layer can be restored in
+   * another session. Returns null if the layer cannot be recorded.
+   */
+  public LayerSnapshot snapshot(OrderedCallGraph layer, Collection<ImpactUnit> impacts) {
+    Preconditions.checkState(layer instanceof OrderedRTACallGraph);
+    return LayerSnapshot.capture((OrderedRTACallGraph) layer, impacts);
+  }
+
+  /**
+   * Restores the recorded contents into a layer that is created but not updated yet. Returns false if the layer is
+   * not modified because the contents cannot be found in the session.
+   */
+  public boolean restore(OrderedCallGraph layer, LayerSnapshot snapshot, AnalysisSession sess) {
+    Preconditions.checkState(layer instanceof OrderedRTACallGraph);
+    OrderedRTACallGraph rtaLayer = (OrderedRTACallGraph) layer;
+    Preconditions.checkState(!rtaLayer.isUpdated());
+    return snapshot.restore(rtaLayer, sess);
+  }
+
+  private static Set<ImpactUnit> createObjects(AnalysisSession sess, Collection<Klass> instantiatedKlasses) {
     ImpactFactory.ImpactBuilder builder = sess.createImpactBuilder();
     for (Klass klass : instantiatedKlasses) {
       builder.createObject(klass);
     }
 
-    for (ImpactUnit u : builder.build()) {
+    return builder.build();
+  }
+
+  @Override
+  public CallGraph createCallGraph(AnalysisSession sess, Collection<Klass> instantiatedKlasses,
+                                   Collection<KlassMethod> entryMethods) {
+    RTACallGraph cg = new RTACallGraph(sess.getFakeCaller(), recordsEdges);
+    for (ImpactUnit u : createObjects(sess, instantiatedKlasses)) {
       cg.addImpactUnit(u);
     }
 
@@ -102,4 +143,53 @@ public class RTA implements OrderedCallGraphAlgorithm, SimpleCallGraphAlgorithm
 
     return cg;
   }
+
+  /**
+   * Creates the same call graph as {@link #createCallGraph(AnalysisSession, Collection, Collection)} with the
+   * method bodies visited by {@code parallelism} threads. It is meant for a graph of many entries, such as all the
+   * tests of a project. A parallelism below 2 builds the graph on the current thread. The parallel engine always
+   * records the edges.
+   */
+  public CallGraph createCallGraph(AnalysisSession sess, Collection<Klass> instantiatedKlasses,
+                                   Collection<KlassMethod> entryMethods, int parallelism) {
+    Preconditions.checkArgument(parallelism >= 0, parallelism);
+    if (parallelism < 2) {
+      return createCallGraph(sess, instantiatedKlasses, entryMethods);
+    }
+
+    return ParallelRTA.build(sess.getFakeCaller(), createObjects(sess, instantiatedKlasses), entryMethods,
+            parallelism);
+  }
+
+  /**
+   * Records the state of a graph that was created by this RTA from {@code instantiatedKlasses} and
+   * {@code entryMethods}, so that {@link #updateCallGraph} can update it in a later session. A graph returned by
+   * {@link #updateCallGraph} is recorded from the previous state and the bodies that the update parsed. Returns null
+   * if the graph cannot be recorded.
+   */
+  @Nullable
+  public RTAState captureState(AnalysisSession sess, CallGraph graph, Collection<Klass> instantiatedKlasses,
+                               Collection<KlassMethod> entryMethods) {
+    Preconditions.checkState(recordsEdges, "The edges are not recorded");
+    if (!(graph instanceof RTACallGraph) || !(((RTACallGraph) graph).getPAG() instanceof SinglePointsToGraph)) {
+      return null;
+    }
+
+    return RTAState.capture((RTACallGraph) graph, sess.getFakeCaller(), createObjects(sess, instantiatedKlasses),
+            entryMethods);
+  }
+
+  /**
+   * Creates the same call graph as {@link #createCallGraph(AnalysisSession, Collection, Collection)} by updating
+   * the graph of a previous session, whose state is {@code previous}. {@code changedMethods} are the signatures of
+   * the methods whose bodies are changed since then, as given by {@link KlassMethod#getSignature()}; no other
+   * changes of the classes are allowed. The instantiated klasses and the entries may differ from the previous
+   * ones. The graph is created from scratch if the previous one cannot be updated.
+   */
+  public CallGraph updateCallGraph(AnalysisSession sess, RTAState previous, Set<String> changedMethods,
+                                   Collection<Klass> instantiatedKlasses, Collection<KlassMethod> entryMethods) {
+    Preconditions.checkState(recordsEdges, "The edges are not recorded");
+    CallGraph cg = previous.update(sess, changedMethods, createObjects(sess, instantiatedKlasses), entryMethods);
+    return cg != null ? cg : createCallGraph(sess, instantiatedKlasses, entryMethods);
+  }
 }
@@ -35,12 +35,11 @@ package org.orta.core.cg.rta;
 
 
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Sets.SetView;
 import com.google.common.graph.EndpointPair;
-import com.google.common.graph.GraphBuilder;
-import com.google.common.graph.MutableGraph;
 import com.google.common.graph.Traverser;
 import org.orta.core.cg.CallGraph;
 import org.orta.core.cg.impacts.ImpactUnit;
@@ -51,30 +50,50 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 class RTACallGraph implements CallGraph {
 
-  final MutableGraph<KlassMethod> cg = GraphBuilder.directed().allowsSelfLoops(true)
-          .build();
+  final MethodGraph cg = new MethodGraph();
   private final PointsToGraph pag;
   private final KlassMethod fakeRoot;
+  private final boolean recordsEdges;
   private ImpactVisitor visitor;
 
-  RTACallGraph(PointsToGraph pag, KlassMethod fakeRoot) {
+  /**
+   * @param recordsEdges false if only the reached methods are kept. The invocations are still resolved, but the
+   *                     edges are not stored, so {@link #edges()}, {@link #getCallersOf(KlassMethod)},
+   *                     {@link #successors(KlassMethod)} and the reachables cannot be used.
+   */
+  RTACallGraph(PointsToGraph pag, KlassMethod fakeRoot, boolean recordsEdges) {
     this.pag = pag;
     this.fakeRoot = fakeRoot;
+    this.recordsEdges = recordsEdges;
+  }
+
+  RTACallGraph(PointsToGraph pag, KlassMethod fakeRoot) {
+    this(pag, fakeRoot, true);
+  }
+
+  RTACallGraph(KlassMethod fakeRoot, boolean recordsEdges) {
+    this(new SinglePointsToGraph(), fakeRoot, recordsEdges);
   }
 
   RTACallGraph(KlassMethod fakeRoot) {
-    this(new SinglePointsToGraph(), fakeRoot);
+    this(fakeRoot, true);
+  }
+
+  boolean recordsEdges() {
+    return recordsEdges;
   }
 
   public boolean isUpdated() {
-    return !cg.nodes().isEmpty();
+    return cg.nodeCount() > 0;
   }
 
-  private ImpactVisitor getVisitor() {
+  ImpactVisitor getVisitor() {
     if (visitor == null) {
       visitor = pag.createVisitor(this, fakeRoot);
     }
@@ -82,7 +101,7 @@ class RTACallGraph implements CallGraph {
     return visitor;
   }
 
-  MutableGraph<KlassMethod> getGraph() {
+  MethodGraph getGraph() {
     return cg;
   }
 
@@ -113,7 +132,10 @@ class RTACallGraph implements CallGraph {
   }
 
   public void registerInvocation(@NonNull KlassMethod caller, @NonNull KlassMethod callee) {
-    cg.putEdge(caller, callee);
+    // The callee is already marked as visited, so nothing is left to record without the edges.
+    if (recordsEdges) {
+      cg.putEdge(caller, callee);
+    }
   }
 
   @Override
@@ -130,9 +152,17 @@ class RTACallGraph implements CallGraph {
   public Iterable<KlassMethod> getReachables(Set<KlassMethod> klassMethods) {
     Set<KlassMethod> entries = new HashSet<>(klassMethods);
     entries.add(fakeRoot);
+    Preconditions.checkState(recordsEdges, "The edges are not recorded");
     return Traverser.forGraph(cg).breadthFirst(entries);
   }
 
+  @Override
+  public <K> void forEachReachables(Map<K, ? extends Set<KlassMethod>> entries,
+                                    BiConsumer<K, Iterator<KlassMethod>> consumer) {
+    Preconditions.checkState(recordsEdges, "The edges are not recorded");
+    BatchReachability.forEachReachables(cg, fakeRoot, entries, consumer);
+  }
+
   @Override
   public void addEntry(KlassMethod m) {
     getVisitor().acceptEntryMethod(m);
@@ -140,6 +170,7 @@ class RTACallGraph implements CallGraph {
 
   @Override
   public SetView<KlassMethod> getCallersOf(KlassMethod callee) {
+    Preconditions.checkState(recordsEdges, "The edges are not recorded");
     return Sets.union(cg.predecessors(callee), ImmutableSet.of());
   }
 
@@ -150,16 +181,19 @@ class RTACallGraph implements CallGraph {
 
   @Override
   public SetView<EndpointPair<KlassMethod>> edges() {
+    Preconditions.checkState(recordsEdges, "The edges are not recorded");
     return Sets.union(cg.edges(), ImmutableSet.of());
   }
 
   @Override
   public Iterable<KlassMethod> getReachables(KlassMethod node) {
+    Preconditions.checkState(recordsEdges, "The edges are not recorded");
     return Traverser.forGraph(cg).breadthFirst(Arrays.asList(node, fakeRoot));
   }
 
   @Override
   public Set<KlassMethod> successors(KlassMethod currentNode) {
+    Preconditions.checkState(recordsEdges, "The edges are not recorded");
     return cg.successors(currentNode);
   }
 }
@@ -40,7 +40,6 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Multiset;
 import com.google.common.graph.EndpointPair;
 import com.google.common.graph.Graph;
-import com.google.common.graph.MutableGraph;
 import org.orta.core.cg.CallGraph;
 import org.orta.core.cg.OrderedCallGraph;
 import org.orta.core.type.klass.KlassMethod;
@@ -65,7 +64,7 @@ public class RTAEdgeCounter {
     for (CallGraph cg : graphs) {
       if (cg instanceof OrderedCallGraph) {
         OrderedRTACallGraph ocg = (OrderedRTACallGraph) cg;
-        for (MutableGraph<KlassMethod> mg : ocg.parents) {
+        for (MethodGraph mg : ocg.parents) {
           visited.add(mg);
         }
 
@@ -84,7 +83,7 @@ public class RTAEdgeCounter {
     for (CallGraph cg : graphs) {
       if (cg instanceof OrderedCallGraph) {
         OrderedRTACallGraph ocg = (OrderedRTACallGraph) cg;
-        for (MutableGraph<KlassMethod> mg : ocg.parents) {
+        for (MethodGraph mg : ocg.parents) {
           if (visited.add(mg)) {
             sum(faker, mg.edges(), counter);
           }
@@ -0,0 +1,899 @@
+package org.orta.core.cg.rta;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import org.orta.core.cg.CallGraph;
+import org.orta.core.cg.impacts.DynamicImpactResolver;
+import org.orta.core.cg.impacts.DynamicInvocationImpact;
+import org.orta.core.cg.impacts.ImpactUnit;
+import org.orta.core.cg.impacts.ImpactVisitor;
+import org.orta.core.type.AnalysisSession;
+import org.orta.core.type.TypeHelper;
+import org.orta.core.type.klass.Klass;
+import org.orta.core.type.klass.KlassMethod;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The state of a whole RTA call graph, recorded by names so that the graph can be updated in a later session for
+ * the changed methods instead of being created again.
+ * <p>
+ * Besides the methods, the edges and the instantiated types of the graph, the state records what the body of each
+ * method did while the graph was created: the types it instantiated, the methods it invoked, and its dynamic call
+ * sites. It also records the methods that were reached by dispatching on each instantiated type. An update first
+ * retracts the changed methods and everything that may have been derived from them, then derives the retracted
+ * methods again from what is left. The unchanged methods apply their recorded impacts, so only the bodies of the
+ * changed and of the newly reached methods are parsed.
+ * <p>
+ * Only the bodies of the methods may change between the sessions. A change of the class hierarchy or of the
+ * virtual methods of a class changes how every invocation is dispatched, so such changes need a new graph.
+ */
+public final class RTAState {
+
+  private static final Logger logger = LoggerFactory.getLogger(RTAState.class);
+  private static final int VERSION = 1;
+
+  // The recorded impacts are packed as (operand << 2 | kind).
+  private static final int CREATE = 0;   // the operand is a klass
+  private static final int INVOKE = 1;   // the operand is a method
+  private static final int IMPLICIT = 2; // the operand is a method
+  private static final int DYNAMIC = 3;  // the operand is a resolver
+
+  private final String[] klasses;
+  private final int[] methodOwners;
+  private final String[] methodNames;
+  private final String[] methodDescs;
+  private final int fakeRoot;
+  private final int[] entries;
+  private final int[] edgeOffsets;
+  private final int[] edgeTargets;
+  private final int[] impactOffsets;  // one range per method, and the last one for the initial impacts
+  private final int[] impacts;
+  private final int[] types;
+  private final int[] dispatchOffsets;
+  private final int[] dispatchTargets;
+  private final int[] resolverOwners;
+  private final String[] resolverNames;
+  private final String[] resolverDescs;
+
+  private RTAState(String[] klasses, int[] methodOwners, String[] methodNames, String[] methodDescs, int fakeRoot,
+                   int[] entries, int[] edgeOffsets, int[] edgeTargets, int[] impactOffsets, int[] impacts,
+                   int[] types, int[] dispatchOffsets, int[] dispatchTargets, int[] resolverOwners,
+                   String[] resolverNames, String[] resolverDescs) {
+    this.klasses = klasses;
+    this.methodOwners = methodOwners;
+    this.methodNames = methodNames;
+    this.methodDescs = methodDescs;
+    this.fakeRoot = fakeRoot;
+    this.entries = entries;
+    this.edgeOffsets = edgeOffsets;
+    this.edgeTargets = edgeTargets;
+    this.impactOffsets = impactOffsets;
+    this.impacts = impacts;
+    this.types = types;
+    this.dispatchOffsets = dispatchOffsets;
+    this.dispatchTargets = dispatchTargets;
+    this.resolverOwners = resolverOwners;
+    this.resolverNames = resolverNames;
+    this.resolverDescs = resolverDescs;
+  }
+
+  private static int kindOf(int impact) {
+    return impact & 3;
+  }
+
+  private static int operandOf(int impact) {
+    return impact >>> 2;
+  }
+
+  private static String keyOf(String owner, String name, String desc) {
+    return owner + "." + name + desc;
+  }
+
+  private static String keyOf(KlassMethod m) {
+    return keyOf(m.getDeclaringClass().getInternalName(), m.getMethodName(), m.getDescriptor().toString());
+  }
+
+  /**
+   * Records a graph that was created from {@code initialImpacts} and {@code entryMethods}. Returns null if the
+   * graph holds a resolver that cannot be recorded by names. If the graph was updated from a previous state, the
+   * impacts of the methods whose bodies are unchanged are copied from that state, so only the bodies that the
+   * update parsed are recorded again.
+   */
+  @Nullable
+  static RTAState capture(RTACallGraph cg, KlassMethod fakeRoot, Collection<ImpactUnit> initialImpacts,
+                          Collection<KlassMethod> entryMethods) {
+    SinglePointsToGraph pag = (SinglePointsToGraph) cg.getPAG();
+    Update previous = pag instanceof Update.Replay ? ((Update.Replay) pag).getUpdate() : null;
+    MethodGraph graph = cg.getGraph();
+    List<KlassMethod> methods = new ArrayList<>(graph.nodes());
+    Recorder recorder = new Recorder(methods);
+    int[] impactOffsets = new int[methods.size() + 2];
+    for (int i = 0; i < methods.size(); i++) {
+      impactOffsets[i] = recorder.impacts.size();
+      KlassMethod m = methods.get(i);
+      if (previous == null || !previous.replay(m, recorder)) {
+        for (ImpactUnit u : m.getBody()) {
+          u.apply(recorder);
+        }
+      }
+    }
+
+    impactOffsets[methods.size()] = recorder.impacts.size();
+    for (ImpactUnit u : initialImpacts) {
+      u.apply(recorder);
+    }
+
+    impactOffsets[methods.size() + 1] = recorder.impacts.size();
+    if (!recorder.complete) {
+      return null;
+    }
+
+    int[] edgeOffsets = new int[methods.size() + 1];
+    IntStream.Builder edgeTargets = IntStream.builder();
+    int edgeCount = 0;
+    for (int i = 0; i < methods.size(); i++) {
+      edgeOffsets[i] = edgeCount;
+      for (KlassMethod callee : graph.successors(methods.get(i))) {
+        edgeTargets.add(recorder.methodIds.get(callee));
+        edgeCount++;
+      }
+    }
+
+    edgeOffsets[methods.size()] = edgeCount;
+    Set<Klass> instantiated = pag.getInstantiatedTypes();
+    int[] types = new int[instantiated.size()];
+    int[] dispatchOffsets = new int[types.length + 1];
+    IntStream.Builder dispatchTargets = IntStream.builder();
+    int dispatchCount = 0;
+    int idx = 0;
+    for (Klass type : instantiated) {
+      dispatchOffsets[idx] = dispatchCount;
+      types[idx++] = recorder.klassId(type);
+      for (KlassMethod target : dispatchTargets(pag, type)) {
+        Integer id = recorder.methodIds.get(target);
+        if (id != null) {
+          dispatchTargets.add(id);
+          dispatchCount++;
+        }
+      }
+    }
+
+    dispatchOffsets[types.length] = dispatchCount;
+    int[] entries = new int[entryMethods.size()];
+    idx = 0;
+    for (KlassMethod m : entryMethods) {
+      entries[idx++] = recorder.methodIds.get(m);
+    }
+
+    int[] methodOwners = new int[methods.size()];
+    String[] methodNames = new String[methods.size()];
+    String[] methodDescs = new String[methods.size()];
+    for (int i = 0; i < methods.size(); i++) {
+      KlassMethod m = methods.get(i);
+      methodOwners[i] = recorder.klassId(m.getDeclaringClass());
+      methodNames[i] = m.getMethodName();
+      methodDescs[i] = m.getDescriptor().toString();
+    }
+
+    int[] resolverOwners = new int[recorder.resolvers.size()];
+    String[] resolverNames = new String[recorder.resolvers.size()];
+    String[] resolverDescs = new String[recorder.resolvers.size()];
+    for (Map.Entry<DynamicInvocationImpact, Integer> entry : recorder.resolvers.entrySet()) {
+      DynamicInvocationImpact resolver = entry.getKey();
+      resolverOwners[entry.getValue()] = recorder.klassId(resolver.getReceiverType());
+      resolverNames[entry.getValue()] = resolver.getName();
+      resolverDescs[entry.getValue()] = resolver.getDescriptor().toString();
+    }
+
+    String[] klasses = new String[recorder.klassIds.size()];
+    for (Map.Entry<Klass, Integer> entry : recorder.klassIds.entrySet()) {
+      klasses[entry.getValue()] = entry.getKey().getInternalName();
+    }
+
+    return new RTAState(klasses, methodOwners, methodNames, methodDescs, recorder.methodIds.get(fakeRoot), entries,
+            edgeOffsets, edgeTargets.build().toArray(), impactOffsets, recorder.toArray(), types, dispatchOffsets,
+            dispatchTargets.build().toArray(), resolverOwners, resolverNames, resolverDescs);
+  }
+
+  /**
+   * Returns the methods that the instantiation of {@code type} makes reachable: the callees that its dynamic call
+   * sites are resolved to, or all of its invocable methods if it is not concrete.
+   */
+  private static Set<KlassMethod> dispatchTargets(SinglePointsToGraph pag, Klass type) {
+    Set<KlassMethod> targets = new HashSet<>();
+    if (!type.isConcrete()) {
+      targets.addAll(TypeHelper.resolveInvocableMethods(type));
+      return targets;
+    }
+
+    for (Klass supertype : type.getSupertypes()) {
+      for (DynamicImpactResolver resolver : pag.getResolvers(supertype)) {
+        for (KlassMethod caller : pag.getCallers().get(resolver)) {
+          KlassMethod callee = resolver.resolveCallee(type, caller);
+          if (callee != null) {
+            targets.add(callee);
+          }
+        }
+      }
+    }
+
+    return targets;
+  }
+
+  /**
+   * Updates the recorded graph for a session in which the bodies of {@code changedMethods}, given by their
+   * signatures, are changed, and which creates the graph from {@code initialImpacts} and {@code entryMethods}.
+   * Returns null if the recorded graph refers to methods that cannot be found in the session.
+   */
+  @Nullable
+  RTACallGraph update(AnalysisSession sess, Set<String> changedMethods, Collection<ImpactUnit> initialImpacts,
+                      Collection<KlassMethod> entryMethods) {
+    Update update = new Update(sess, changedMethods);
+    RTACallGraph cg = update.retract(initialImpacts, entryMethods) ? update.rederive(initialImpacts, entryMethods)
+            : null;
+    if (cg == null) {
+      logger.info("The recorded call graph cannot be updated in this session");
+    }
+
+    return cg;
+  }
+
+  public void write(Path path) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new GZIPOutputStream(Files.newOutputStream(path))))) {
+      out.writeInt(VERSION);
+      writeStrings(out, klasses);
+      writeInts(out, methodOwners);
+      writeStrings(out, methodNames);
+      writeStrings(out, methodDescs);
+      out.writeInt(fakeRoot);
+      writeInts(out, entries);
+      writeInts(out, edgeOffsets);
+      writeInts(out, edgeTargets);
+      writeInts(out, impactOffsets);
+      writeInts(out, impacts);
+      writeInts(out, types);
+      writeInts(out, dispatchOffsets);
+      writeInts(out, dispatchTargets);
+      writeInts(out, resolverOwners);
+      writeStrings(out, resolverNames);
+      writeStrings(out, resolverDescs);
+    }
+  }
+
+  public static RTAState read(Path path) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new GZIPInputStream(Files.newInputStream(path))))) {
+      if (in.readInt() != VERSION) {
+        throw new IOException("Unsupported state version: " + path);
+      }
+
+      return new RTAState(readStrings(in), readInts(in), readStrings(in), readStrings(in), in.readInt(),
+              readInts(in), readInts(in), readInts(in), readInts(in), readInts(in), readInts(in), readInts(in),
+              readInts(in), readInts(in), readStrings(in), readStrings(in));
+    }
+  }
+
+  private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+    out.writeInt(values.length);
+    for (String value : values) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String[] readStrings(DataInputStream in) throws IOException {
+    String[] values = new String[in.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = in.readUTF();
+    }
+
+    return values;
+  }
+
+  private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    out.writeInt(values.length);
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static int[] readInts(DataInputStream in) throws IOException {
+    int[] values = new int[in.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = in.readInt();
+    }
+
+    return values;
+  }
+
+  /**
+   * Records the impacts that the units of a body apply, instead of applying them.
+   */
+  private static final class Recorder implements ImpactVisitor {
+    private final Map<KlassMethod, Integer> methodIds = new HashMap<>();
+    private final Map<Klass, Integer> klassIds = new HashMap<>();
+    private final Map<DynamicInvocationImpact, Integer> resolvers = new HashMap<>();
+    private final List<Integer> impacts = new ArrayList<>();
+    private boolean complete = true;
+
+    Recorder(List<KlassMethod> methods) {
+      for (KlassMethod m : methods) {
+        methodIds.put(m, methodIds.size());
+      }
+    }
+
+    int klassId(Klass klass) {
+      return klassIds.computeIfAbsent(klass, x -> klassIds.size());
+    }
+
+    int[] toArray() {
+      return impacts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void record(@Nullable KlassMethod method, int kind) {
+      if (method == null) {
+        return;
+      }
+
+      Integer id = methodIds.get(method);
+      if (id == null) {
+        // Every invoked method is reached, unless the graph was not created by applying these bodies.
+        complete = false;
+      } else {
+        impacts.add(id << 2 | kind);
+      }
+    }
+
+    @Override
+    public void instantiateType(ImpactUnit unit, Klass type) {
+      impacts.add(klassId(type) << 2 | CREATE);
+    }
+
+    @Override
+    public void registerInvoked(ImpactUnit unit, KlassMethod callee) {
+      record(callee, INVOKE);
+    }
+
+    @Override
+    public void addDynamicImpact(ImpactUnit u, DynamicImpactResolver resolver) {
+      if (resolver instanceof DynamicInvocationImpact) {
+        int id = resolvers.computeIfAbsent((DynamicInvocationImpact) resolver, x -> resolvers.size());
+        impacts.add(id << 2 | DYNAMIC);
+      } else {
+        complete = false;
+      }
+    }
+
+    @Override
+    public void implicitInvoke(ImpactUnit unit, KlassMethod method) {
+      record(method, IMPLICIT);
+    }
+
+    @Override
+    public void acceptEntryMethod(KlassMethod m) {
+    }
+
+    @Override
+    public void acceptImpactUnit(ImpactUnit impactUnit) {
+    }
+  }
+
+  /**
+   * One update of the recorded graph. The methods that may have lost a derivation are retracted first, by
+   * following the edges and the recorded impacts of the changed methods, and the dispatch targets of the types
+   * that lose all of their creators. The graph is then restored without them, and each of them is derived again
+   * if a remaining method still invokes it or a remaining type still dispatches to it.
+   */
+  private final class Update {
+    private final AnalysisSession sess;
+    private final BitSet changed = new BitSet();
+    private final BitSet retracted = new BitSet();
+    private final BitSet retractedKlasses = new BitSet();
+    private final int[] creators = new int[klasses.length];
+    private final Map<String, Integer> methodIds = new HashMap<>();
+    private final Map<Integer, Integer> typeIds = new HashMap<>();
+    private final Klass[] resolvedKlasses = new Klass[klasses.length];
+    private final KlassMethod[] resolvedMethods = new KlassMethod[methodOwners.length];
+    private final BitSet unresolvable = new BitSet();
+    private final KlassFinder finder;
+    private final int[] stack = new int[methodOwners.length];
+    private int stackSize = 0;
+
+    Update(AnalysisSession sess, Set<String> changedMethods) {
+      this.sess = sess;
+      this.finder = new KlassFinder(sess, this::parseCreators);
+      for (int i = 0; i < methodOwners.length; i++) {
+        methodIds.put(keyOf(klasses[methodOwners[i]], methodNames[i], methodDescs[i]), i);
+        String signature = klasses[methodOwners[i]].replace("/", ".") + "." + methodNames[i] + methodDescs[i];
+        if (changedMethods.contains(signature)) {
+          changed.set(i);
+        }
+      }
+
+      for (int i = 0; i < types.length; i++) {
+        typeIds.put(types[i], i);
+      }
+    }
+
+    private void retract(int method) {
+      if (!retracted.get(method)) {
+        retracted.set(method);
+        stack[stackSize++] = method;
+      }
+    }
+
+    private void retractCreation(int klass) {
+      if (--creators[klass] == 0) {
+        retractedKlasses.set(klass);
+        int type = typeIds.get(klass);
+        for (int i = dispatchOffsets[type]; i < dispatchOffsets[type + 1]; i++) {
+          retract(dispatchTargets[i]);
+        }
+      }
+    }
+
+    /**
+     * Retracts the changed methods, the entries and the initial impacts that are no longer given, and everything
+     * that may be derived from them. Returns false if a retracted initial impact cannot be followed.
+     */
+    boolean retract(Collection<ImpactUnit> initialImpacts, Collection<KlassMethod> entryMethods) {
+      int root = methodOwners.length;
+      for (int i = 0; i <= root; i++) {
+        for (int j = impactOffsets[i]; j < impactOffsets[i + 1]; j++) {
+          if (kindOf(impacts[j]) == CREATE) {
+            creators[operandOf(impacts[j])]++;
+          }
+        }
+      }
+
+      Set<String> given = new HashSet<>();
+      Namer namer = new Namer(given);
+      for (ImpactUnit u : initialImpacts) {
+        u.apply(namer);
+      }
+
+      for (int j = impactOffsets[root]; j < impactOffsets[root + 1]; j++) {
+        int impact = impacts[j];
+        if (given.contains(nameOf(impact))) {
+          continue;
+        }
+
+        switch (kindOf(impact)) {
+          case CREATE:
+            retractCreation(operandOf(impact));
+            break;
+          case DYNAMIC:
+            return false;
+          default:
+            retract(operandOf(impact));
+        }
+      }
+
+      Set<String> entryKeys = new HashSet<>();
+      for (KlassMethod m : entryMethods) {
+        entryKeys.add(keyOf(m));
+      }
+
+      for (int entry : entries) {
+        if (!entryKeys.contains(keyOf(klasses[methodOwners[entry]], methodNames[entry], methodDescs[entry]))) {
+          retract(entry);
+        }
+      }
+
+      for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+        retract(i);
+      }
+
+      while (stackSize > 0) {
+        int method = stack[--stackSize];
+        for (int i = edgeOffsets[method]; i < edgeOffsets[method + 1]; i++) {
+          retract(edgeTargets[i]);
+        }
+
+        for (int j = impactOffsets[method]; j < impactOffsets[method + 1]; j++) {
+          int impact = impacts[j];
+          switch (kindOf(impact)) {
+            case CREATE:
+              retractCreation(operandOf(impact));
+              break;
+            case INVOKE:
+            case IMPLICIT:
+              retract(operandOf(impact));
+              break;
+            default:
+          }
+        }
+      }
+
+      return true;
+    }
+
+    private String nameOf(int impact) {
+      int operand = operandOf(impact);
+      switch (kindOf(impact)) {
+        case CREATE:
+          return "new " + klasses[operand];
+        case INVOKE:
+          return "invoke " + keyOf(klasses[methodOwners[operand]], methodNames[operand], methodDescs[operand]);
+        case IMPLICIT:
+          return "implicit " + keyOf(klasses[methodOwners[operand]], methodNames[operand], methodDescs[operand]);
+        default:
+          return "dynamic " + keyOf(klasses[resolverOwners[operand]], resolverNames[operand],
+                  resolverDescs[operand]);
+      }
+    }
+
+    /**
+     * Restores the graph without the retracted methods, and derives the retracted methods that are still
+     * reachable. Returns null if a remaining method cannot be found in the session.
+     */
+    @Nullable
+    RTACallGraph rederive(Collection<ImpactUnit> initialImpacts, Collection<KlassMethod> entryMethods) {
+      int root = methodOwners.length;
+      Replay pag = new Replay();
+      RTACallGraph cg = new RTACallGraph(pag, sess.getFakeCaller());
+      MethodGraph graph = cg.getGraph();
+      for (int i = retracted.nextClearBit(0); i < root; i = retracted.nextClearBit(i + 1)) {
+        KlassMethod m = method(i);
+        if (m == null) {
+          return null;
+        }
+
+        graph.addNode(m);
+      }
+
+      for (int i = retracted.nextClearBit(0); i < root; i = retracted.nextClearBit(i + 1)) {
+        for (int j = edgeOffsets[i]; j < edgeOffsets[i + 1]; j++) {
+          if (!retracted.get(edgeTargets[j])) {
+            graph.putEdge(resolvedMethods[i], resolvedMethods[edgeTargets[j]]);
+          }
+        }
+      }
+
+      for (int type : types) {
+        if (!retractedKlasses.get(type)) {
+          Klass klass = klass(type);
+          if (klass == null) {
+            return null;
+          }
+
+          pag.addInstantiatedType(klass);
+        }
+      }
+
+      for (int i = retracted.nextClearBit(0); i <= root; i = retracted.nextClearBit(i + 1)) {
+        for (int j = impactOffsets[i]; j < impactOffsets[i + 1]; j++) {
+          if (kindOf(impacts[j]) == DYNAMIC) {
+            DynamicImpactResolver resolver = resolver(operandOf(impacts[j]));
+            if (resolver == null) {
+              return null;
+            }
+
+            pag.addCaller(resolver, i == root ? null : resolvedMethods[i]);
+          }
+        }
+      }
+
+      Replay.ReplayVisitor visitor = (Replay.ReplayVisitor) cg.getVisitor();
+      int rederived = 0;
+      for (int i = retracted.nextClearBit(0); i < root; i = retracted.nextClearBit(i + 1)) {
+        for (int j = impactOffsets[i]; j < impactOffsets[i + 1]; j++) {
+          int impact = impacts[j];
+          int kind = kindOf(impact);
+          if ((kind == INVOKE || kind == IMPLICIT) && retracted.get(operandOf(impact))) {
+            KlassMethod callee = method(operandOf(impact));
+            if (callee == null) {
+              return null;
+            }
+
+            visitor.invoke(resolvedMethods[i], callee, kind == IMPLICIT);
+            rederived++;
+          }
+        }
+      }
+
+      for (int i = 0; i < types.length; i++) {
+        if (retractedKlasses.get(types[i])) {
+          continue;
+        }
+
+        for (int j = dispatchOffsets[i]; j < dispatchOffsets[i + 1]; j++) {
+          if (retracted.get(dispatchTargets[j])) {
+            visitor.instantiateAgain(resolvedKlasses[types[i]]);
+            rederived++;
+            break;
+          }
+        }
+      }
+
+      for (ImpactUnit u : initialImpacts) {
+        cg.addImpactUnit(u);
+      }
+
+      for (KlassMethod m : entryMethods) {
+        cg.addEntry(m);
+      }
+
+      logger.info("Updated the call graph: {} of {} methods retracted, {} derivations followed again, {} bodies "
+              + "parsed", retracted.cardinality(), root, rederived, visitor.parsed);
+      return cg;
+    }
+
+    /**
+     * Parses the bodies of the methods that are kept and create lambda klasses.
+     */
+    private void parseCreators() {
+      for (int i = retracted.nextClearBit(0); i < methodOwners.length; i = retracted.nextClearBit(i + 1)) {
+        for (int j = impactOffsets[i]; j < impactOffsets[i + 1]; j++) {
+          int impact = impacts[j];
+          if (kindOf(impact) == CREATE && KlassFinder.isLambda(klasses[operandOf(impact)])) {
+            KlassMethod creator = method(i);
+            if (creator != null) {
+              creator.getBody();
+            }
+
+            break;
+          }
+        }
+      }
+    }
+
+    @Nullable
+    private Klass klass(int id) {
+      Klass klass = resolvedKlasses[id];
+      if (klass == null) {
+        klass = finder.find(klasses[id]);
+        resolvedKlasses[id] = klass;
+      }
+
+      return klass;
+    }
+
+    @Nullable
+    private KlassMethod method(int id) {
+      KlassMethod method = resolvedMethods[id];
+      if (method != null || unresolvable.get(id)) {
+        return method;
+      }
+
+      if (id == fakeRoot) {
+        method = sess.getFakeCaller();
+      } else {
+        Klass owner = klass(methodOwners[id]);
+        method = owner == null ? null
+                : owner.tryExactInvocation(methodNames[id], sess.getOrCreateMethodDescriptor(methodDescs[id]));
+      }
+
+      if (method == null) {
+        unresolvable.set(id);
+      } else {
+        resolvedMethods[id] = method;
+      }
+
+      return method;
+    }
+
+    @Nullable
+    private DynamicImpactResolver resolver(int id) {
+      Klass owner = klass(resolverOwners[id]);
+      if (owner == null) {
+        return null;
+      }
+
+      return sess.getDynamicInvocation(owner, resolverNames[id], sess.getOrCreateMethodDescriptor(resolverDescs[id]));
+    }
+
+    /**
+     * Applies the recorded impacts of an unchanged method. Returns false without applying anything if the method
+     * is changed or not recorded, or if one of its impacts cannot be found in the session.
+     */
+    boolean replay(KlassMethod method, ImpactVisitor visitor) {
+      Integer id = methodIds.get(keyOf(method));
+      if (id == null || changed.get(id)) {
+        return false;
+      }
+
+      Object[] operands = new Object[impactOffsets[id + 1] - impactOffsets[id]];
+      for (int j = impactOffsets[id]; j < impactOffsets[id + 1]; j++) {
+        int operand = operandOf(impacts[j]);
+        switch (kindOf(impacts[j])) {
+          case CREATE:
+            operands[j - impactOffsets[id]] = klass(operand);
+            break;
+          case DYNAMIC:
+            operands[j - impactOffsets[id]] = resolver(operand);
+            break;
+          default:
+            operands[j - impactOffsets[id]] = method(operand);
+        }
+
+        if (operands[j - impactOffsets[id]] == null) {
+          return false;
+        }
+      }
+
+      for (int j = impactOffsets[id]; j < impactOffsets[id + 1]; j++) {
+        Object operand = operands[j - impactOffsets[id]];
+        switch (kindOf(impacts[j])) {
+          case CREATE:
+            visitor.instantiateType(null, (Klass) operand);
+            break;
+          case INVOKE:
+            visitor.registerInvoked(null, (KlassMethod) operand);
+            break;
+          case IMPLICIT:
+            visitor.implicitInvoke(null, (KlassMethod) operand);
+            break;
+          default:
+            visitor.addDynamicImpact(null, (DynamicImpactResolver) operand);
+        }
+      }
+
+      return true;
+    }
+
+    /**
+     * The points-to graph of the updated graph, whose visitor replays the recorded impacts of unchanged methods.
+     * It keeps the update, so that the graph is recorded again without parsing the unchanged bodies.
+     */
+    private final class Replay extends SinglePointsToGraph {
+
+      Update getUpdate() {
+        return Update.this;
+      }
+
+      @Override
+      public ImpactVisitor createVisitor(CallGraph cg, KlassMethod fakeRoot) {
+        ImpactVisitor visitor = new ReplayVisitor(cg);
+        visitor.acceptEntryMethod(fakeRoot);
+        return visitor;
+      }
+
+      private final class ReplayVisitor extends Visitor {
+        private int parsed = 0;
+
+        ReplayVisitor(CallGraph cg) {
+          super(cg);
+        }
+
+        @Override
+        protected void visitBody(@NonNull KlassMethod method) {
+          if (!replay(method, this)) {
+            parsed++;
+            super.visitBody(method);
+          }
+        }
+
+        /**
+         * Follows an invocation of a remaining method again.
+         */
+        void invoke(KlassMethod caller, KlassMethod callee, boolean implicit) {
+          this.currentCaller = caller;
+          if (implicit) {
+            implicitInvoke(null, callee);
+          } else {
+            registerInvoked(null, callee);
+          }
+
+          consumeWorkList();
+        }
+
+        /**
+         * Dispatches on a remaining type again.
+         */
+        void instantiateAgain(Klass type) {
+          if (type.isConcrete()) {
+            handleNewlyInstantiated(type);
+          } else {
+            for (KlassMethod method : TypeHelper.resolveInvocableMethods(type)) {
+              implicitInvoke(null, method);
+            }
+          }
+
+          consumeWorkList();
+        }
+      }
+    }
+  }
+
+  /**
+   * Names the impacts that the units apply, so that the initial impacts of two sessions can be compared.
+   */
+  private static final class Namer implements ImpactVisitor {
+    private final Set<String> names;
+
+    Namer(Set<String> names) {
+      this.names = names;
+    }
+
+    @Override
+    public void instantiateType(ImpactUnit unit, Klass type) {
+      names.add("new " + type.getInternalName());
+    }
+
+    @Override
+    public void registerInvoked(ImpactUnit unit, KlassMethod callee) {
+      if (callee != null) {
+        names.add("invoke " + keyOf(callee));
+      }
+    }
+
+    @Override
+    public void addDynamicImpact(ImpactUnit u, DynamicImpactResolver resolver) {
+      if (resolver instanceof DynamicInvocationImpact) {
+        DynamicInvocationImpact impact = (DynamicInvocationImpact) resolver;
+        names.add("dynamic " + keyOf(impact.getReceiverType().getInternalName(), impact.getName(),
+                impact.getDescriptor().toString()));
+      }
+    }
+
+    @Override
+    public void implicitInvoke(ImpactUnit unit, KlassMethod method) {
+      if (method != null) {
+        names.add("implicit " + keyOf(method));
+      }
+    }
+
+    @Override
+    public void acceptEntryMethod(KlassMethod m) {
+    }
+
+    @Override
+    public void acceptImpactUnit(ImpactUnit impactUnit) {
+    }
+  }
+}
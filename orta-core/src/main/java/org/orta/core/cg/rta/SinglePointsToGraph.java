@@ -44,12 +44,11 @@ import org.orta.core.cg.impacts.ImpactVisitor;
 import org.orta.core.type.klass.Klass;
 import org.orta.core.type.klass.KlassMethod;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
 import java.util.HashSet;
-import java.util.Map.Entry;
 import java.util.Set;
 
 public class SinglePointsToGraph implements PointsToGraph {
@@ -60,6 +59,45 @@ public class SinglePointsToGraph implements PointsToGraph {
           .hashSetValues().build();
   @NonNull
   private final Set<Klass> instantiatedTypes = new HashSet<>();
+  @NonNull
+  private final SetMultimap<Klass, DynamicImpactResolver> resolversByReceiver = MultimapBuilder.hashKeys()
+          .hashSetValues().build();
+  @NonNull
+  private final SetMultimap<Klass, Klass> instantiatedBySupertype = MultimapBuilder.hashKeys()
+          .hashSetValues().build();
+
+  boolean addCaller(DynamicImpactResolver resolver, @Nullable KlassMethod caller) {
+    if (!callers.put(resolver, caller)) {
+      return false;
+    }
+
+    resolversByReceiver.put(resolver.getReceiverType(), resolver);
+    return true;
+  }
+
+  boolean addInstantiatedType(Klass type) {
+    if (!instantiatedTypes.add(type)) {
+      return false;
+    }
+
+    for (Klass supertype : type.getSupertypes()) {
+      instantiatedBySupertype.put(supertype, type);
+    }
+
+    return true;
+  }
+
+  Set<Klass> getInstantiatedTypes() {
+    return instantiatedTypes;
+  }
+
+  SetMultimap<DynamicImpactResolver, KlassMethod> getCallers() {
+    return callers;
+  }
+
+  Set<DynamicImpactResolver> getResolvers(Klass receiverType) {
+    return resolversByReceiver.get(receiverType);
+  }
 
   @Override
   public ImpactVisitor createVisitor(CallGraph cg, KlassMethod fakeRoot) {
@@ -68,50 +106,34 @@ public class SinglePointsToGraph implements PointsToGraph {
     return visitor;
   }
 
-  private class Visitor extends DefaultImpactVisitor {
+  class Visitor extends DefaultImpactVisitor {
     public Visitor(CallGraph cg) {
       super(cg, logger);
     }
 
     @Override
     protected boolean isVisitedBefore(DynamicImpactResolver resolver, KlassMethod caller) {
-      return !callers.put(resolver, caller);
+      return !addCaller(resolver, caller);
     }
 
     @Override
     protected void handleNewlyAddedResolver(DynamicImpactResolver resolver) {
-      Klass resolverType = resolver.getReceiverType();
-      for (Klass type : instantiatedTypes) {
-        if (type.inherits(resolverType)) {
-          resolveInvocation(type, resolver);
-        }
+      for (Klass type : instantiatedBySupertype.get(resolver.getReceiverType())) {
+        resolveInvocation(type, resolver);
       }
     }
 
     @Override
     protected boolean isVisitedBefore(Klass type) {
-      return !instantiatedTypes.add(type);
+      return !addInstantiatedType(type);
     }
 
     @Override
     protected void handleNewlyInstantiated(Klass type) {
-      Set<Klass> rejected = new HashSet<>();
-      Set<Klass> accepted = new HashSet<>();
-      for (Entry<DynamicImpactResolver, Collection<KlassMethod>> entry : callers.asMap().entrySet()) {
-        DynamicImpactResolver resolver = entry.getKey();
-        Klass resolverType = resolver.getReceiverType();
-        if (!accepted.contains(resolverType)) {
-          if (rejected.contains(resolverType)) {
-            continue;
-          } else if (!type.inherits(resolverType)) {
-            rejected.add(resolverType);
-            continue;
-          } else {
-            accepted.add(resolverType);
-          }
+      for (Klass supertype : type.getSupertypes()) {
+        for (DynamicImpactResolver resolver : resolversByReceiver.get(supertype)) {
+          resolveInvocation(type, resolver, callers.get(resolver));
         }
-
-        resolveInvocation(type, resolver, entry.getValue());
       }
     }
   }
@@ -39,6 +39,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import org.orta.core.cg.impacts.DynamicInvocationImpact;
 import org.orta.core.cg.impacts.ImpactFactory;
 import org.orta.core.cg.impacts.ImpactUnit;
 import org.orta.core.type.klass.FakeCallerKlass;
@@ -51,15 +52,20 @@ import org.orta.core.type.locator.EmptyClassSource;
 import org.orta.core.type.locator.FieldSource;
 import org.orta.core.type.locator.MethodSource;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -80,12 +86,16 @@ public class AnalysisSession implements AutoCloseable {
   @NonNull
   private final ClassSourceLocator locator;
   @NonNull
-  private final Map<String, Klass> name2Ref = new HashMap<>();
-  private final Map<Type, MethodDescriptor> desc2method = new HashMap<>();
-  private final Map<Type, ArrayType> desc2arr = new HashMap<>();
+  private final Map<String, Klass> name2Ref = new ConcurrentHashMap<>();
+  private final Map<Type, MethodDescriptor> desc2method = new ConcurrentHashMap<>();
+  private final Map<Type, ArrayType> desc2arr = new ConcurrentHashMap<>();
+  private final Map<ResolutionKey, Optional<KlassMethod>> resolutions = new ConcurrentHashMap<>();
+  private final LongAdder resolutionHits = new LongAdder();
+  private final LongAdder resolutionMisses = new LongAdder();
   private final ImpactFactory factory = new ImpactFactory();
+  private final AtomicInteger methodIds = new AtomicInteger();
   private final Klass fakeKlass = new FakeCallerKlass(this);
-  private Klass[] essentialKlasses;
+  private volatile Klass[] essentialKlasses;
 
   public AnalysisSession(@NonNull ClassSourceLocator classSourceLocator) {
     this.locator = classSourceLocator;
@@ -104,9 +114,44 @@ public class AnalysisSession implements AutoCloseable {
   }
 
   public void close() {
+    logger.debug("Method resolutions: {} hits, {} misses", getResolutionHits(), getResolutionMisses());
     locator.close();
   }
 
+  /**
+   * Resolves the method invoked by {@code name} and {@code desc} on {@code owner}. The results, including the
+   * missing methods, are cached for the session since the hierarchy of a loaded klass does not change.
+   */
+  @Nullable
+  public KlassMethod resolveMethod(@NonNull Klass owner, @NonNull String name, @NonNull MethodDescriptor desc) {
+    ResolutionKey key = new ResolutionKey(owner, name, desc);
+    Optional<KlassMethod> resolved = resolutions.get(key);
+    if (resolved != null) {
+      resolutionHits.increment();
+    } else {
+      resolutionMisses.increment();
+      resolved = resolutions.computeIfAbsent(key,
+              k -> Optional.ofNullable(new MethodResolver(owner, name, desc).get()));
+    }
+
+    return resolved.orElse(null);
+  }
+
+  public long getResolutionHits() {
+    return resolutionHits.sum();
+  }
+
+  public long getResolutionMisses() {
+    return resolutionMisses.sum();
+  }
+
+  /**
+   * Hands out the id of a new method. The ids of the methods of a session are dense, so graphs can index them.
+   */
+  public int nextMethodId() {
+    return methodIds.getAndIncrement();
+  }
+
   public KlassMethod getFakeCaller() {
     return getFakeKlass().streamDeclaringMethods().findFirst().get();
   }
@@ -248,6 +293,28 @@ public class AnalysisSession implements AutoCloseable {
     return factory.builder();
   }
 
+  public DynamicInvocationImpact getDynamicInvocation(@NonNull Klass owner, @NonNull String name,
+                                                      @NonNull MethodDescriptor desc) {
+    return factory.getDynamicInvocation(owner, name, desc);
+  }
+
+  /**
+   * Returns the klass only if it is already loaded or synthesized by this session. Unlike getOrCreateKlass(), it
+   * does not look up the class source, so it is also used for lambda klasses.
+   */
+  public @Nullable Klass getLoadedKlass(@NonNull String internalName) {
+    if (internalName.equals(FakeCallerKlass.KLASSNAME)) {
+      return getFakeKlass();
+    }
+
+    return name2Ref.get(internalName);
+  }
+
+  /**
+   * The prefix of the names of the klasses synthesized by {@link #createLambdaKlass}.
+   */
+  public static final String LAMBDA_PREFIX = "rtscg.lambda.";
+
   public Klass createLambdaKlass(
           String bootstrapper, String superClassName,
           String implementedMethodName, Klass invokedKlass, String invokedName,
@@ -282,7 +349,7 @@ public class AnalysisSession implements AutoCloseable {
       desc = invokedDesc.toString();
     }
 
-    return name2Ref.compute("rtscg.lambda." + joiner.toString(),
+    return name2Ref.compute(LAMBDA_PREFIX + joiner.toString(),
             (klassName, old) -> old != null ? old : new Klass(this, new ClassSource() {
               @Override
               public @NonNull String getInternalName() {
@@ -428,4 +495,31 @@ public class AnalysisSession implements AutoCloseable {
       return typeName;
     }
   }
+
+  private static final class ResolutionKey {
+    private final Klass owner;
+    private final String name;
+    private final MethodDescriptor desc;
+
+    ResolutionKey(Klass owner, String name, MethodDescriptor desc) {
+      this.owner = owner;
+      this.name = name;
+      this.desc = desc;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(owner, name, desc);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof ResolutionKey)) {
+        return false;
+      }
+
+      ResolutionKey o = (ResolutionKey) obj;
+      return o.owner == owner && o.name.equals(name) && o.desc.equals(desc);
+    }
+  }
 }
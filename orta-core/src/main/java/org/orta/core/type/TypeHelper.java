@@ -35,8 +35,6 @@ package org.orta.core.type;
 
 
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.graph.EndpointPair;
 import org.orta.core.type.klass.Klass;
 import org.orta.core.type.klass.KlassMethod;
@@ -45,12 +43,7 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.objectweb.asm.Type;
 
-import java.util.Deque;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Set;
-import java.util.function.BiFunction;
-import java.util.function.Consumer;
 
 public interface TypeHelper {
 
@@ -74,60 +67,11 @@ public interface TypeHelper {
   @Nullable
   static KlassMethod resolveMethod(@NonNull Klass owner, @NonNull String name,
                                    @NonNull MethodDescriptor desc) {
-    return new MethodResolver(owner, name, desc).get();
+    return owner.getSession().resolveMethod(owner, name, desc);
   }
 
   @NonNull
   static Set<KlassMethod> resolveInvocableMethods(Klass type) {
-    HashBasedTable<MethodDescriptor, String, KlassMethod> methods = HashBasedTable.create();
-    Consumer<KlassMethod> adder = x -> methods.put(x.getDescriptor(), x.getMethodName(), x);
-    Set<Klass> interfaces = new HashSet<>(type.getInterfaces());
-
-    type.streamDeclaringMethods()
-            .filter(KlassMethod::isImplementation)
-            .filter(x -> !x.isPrivate())
-            .forEach(adder);
-
-    Klass ptr = type.getSuperClass();
-    while (ptr != null) {
-      ptr.streamDeclaringMethods()
-              .filter(KlassMethod::isImplementation)
-              .filter(x -> !x.isPrivate())
-              .filter(x -> !methods.contains(x.getDescriptor(), x.getMethodName()))
-              .forEach(adder);
-
-      interfaces.addAll(ptr.getInterfaces());
-      ptr = ptr.getSuperClass();
-    }
-
-    BiFunction<KlassMethod, KlassMethod, KlassMethod> resolveDefaultMethods = (old, resolved) -> {
-      if (old == null) {
-        return resolved;
-      }
-      if (!old.getDeclaringClass().isInterface()) {
-        return old;
-      }
-
-      if (old.isOverriddenBy(resolved)) {
-        return resolved;
-      }
-      return old;
-    };
-
-    Deque<Klass> hierarchy = new LinkedList<>(interfaces);
-    while (!hierarchy.isEmpty()) {
-      Klass kls = hierarchy.removeFirst();
-      kls.streamDeclaringMethods()
-              .filter(KlassMethod::isImplementation)
-              .forEach(x -> methods
-                      .put(x.getDescriptor(), x.getMethodName(),
-                              resolveDefaultMethods
-                                      .apply(methods.get(x.getDescriptor(), x.getMethodName()), x)));
-
-      kls.streamInterfaces().filter(interfaces::add).forEach(hierarchy::addFirst);
-    }
-
-    return methods.values().stream()
-            .collect(ImmutableSet.toImmutableSet());
+    return type.getInvocableMethods();
   }
 }
@@ -37,6 +37,9 @@ package org.orta.core.type.klass;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Table;
+import com.google.common.collect.Tables;
 import org.orta.core.type.AnalysisSession;
 import org.orta.core.type.TypeLike;
 import org.orta.core.type.locator.ClassSource;
@@ -52,8 +55,16 @@ import org.objectweb.asm.Type;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
@@ -74,6 +85,8 @@ public class Klass implements TypeLike, Flaggable.GeneralKlassFlag {
   @NonNull
   private final Supplier<Klass> superClass;
   private final boolean isConcrete;
+  @NonNull
+  private final Supplier<Boolean> concrete;
   //  @NonNull
 //  private final Supplier<EnclosingAttrib> enclosingAttrib;
   @NonNull
@@ -82,6 +95,16 @@ public class Klass implements TypeLike, Flaggable.GeneralKlassFlag {
   @NonNull
   private final AnalysisSession tm;
   private final boolean isReachable;
+  @NonNull
+  private final Supplier<Boolean> reachable;
+  @NonNull
+  private final Supplier<ImmutableSet<Klass>> supertypes;
+  @NonNull
+  private final Supplier<ImmutableList<KlassMethod>> classMethods;
+  @NonNull
+  private final Supplier<ImmutableSet<Klass>> classInterfaces;
+  @NonNull
+  private final Supplier<ImmutableSet<KlassMethod>> invocableMethods;
 
   //  public boolean isAccessibleTo(Klass declaringClass, MemberFlag member) {
 //    if (isAccessibleTo(declaringClass)) {
@@ -156,6 +179,12 @@ public class Klass implements TypeLike, Flaggable.GeneralKlassFlag {
 //    this.enclosingAttrib = Suppliers.memorize(() -> resolveEnclosing(tm, source));
     this.methods = Suppliers.memorize(() -> resolveMethods(source.streamMethods()));
     this.fields = Suppliers.memorize(() -> resolveFields(source.streamFields()));
+    this.supertypes = Suppliers.memorize(this::resolveSupertypes);
+    this.concrete = Suppliers.memorize(this::resolveConcrete);
+    this.reachable = Suppliers.memorize(this::resolveReachable);
+    this.classMethods = Suppliers.memorize(this::resolveClassMethods);
+    this.classInterfaces = Suppliers.memorize(this::resolveClassInterfaces);
+    this.invocableMethods = Suppliers.memorize(this::resolveInvocableMethods);
   }
 
   private static ImmutableList<KlassField> resolveFields(Stream<FieldSource> src) {
@@ -185,6 +214,10 @@ public class Klass implements TypeLike, Flaggable.GeneralKlassFlag {
   }
 
   public boolean isConcrete() {
+    return concrete.get();
+  }
+
+  private boolean resolveConcrete() {
     if (!isConcrete) {
       return false;
     }
@@ -213,6 +246,10 @@ public class Klass implements TypeLike, Flaggable.GeneralKlassFlag {
   }
 
   public boolean isReachable() {
+    return reachable.get();
+  }
+
+  private boolean resolveReachable() {
     if (!isReachable) {
       return false;
     }
@@ -297,23 +334,126 @@ public class Klass implements TypeLike, Flaggable.GeneralKlassFlag {
     return internalName;
   }
 
-  public boolean inherits(Klass klass) {
-    if (klass.equals(this)) {
-      return true;
-    }
+  /**
+   * Returns this klass and every klass it inherits, that is, every klass for which {@link #inherits(Klass)} holds.
+   */
+  @NonNull
+  public ImmutableSet<Klass> getSupertypes() {
+    return supertypes.get();
+  }
 
+  private ImmutableSet<Klass> resolveSupertypes() {
+    ImmutableSet.Builder<Klass> builder = ImmutableSet.builder();
+    builder.add(this);
     Klass next = superClass.get();
-    if (next != null && next.inherits(klass)) {
-      return true;
+    if (next != null) {
+      builder.addAll(next.getSupertypes());
     }
+
     for (Klass itf : interfaces.get()) {
-      if (itf.inherits(klass)
-      ) {
-        return true;
+      builder.addAll(itf.getSupertypes());
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Returns the methods that can be invoked on an instance of this klass, that is, the implementations of this klass
+   * and its superclasses that are not overridden, and the default methods of its interfaces. They are resolved once
+   * and ordered by declaration.
+   */
+  @NonNull
+  public ImmutableSet<KlassMethod> getInvocableMethods() {
+    return invocableMethods.get();
+  }
+
+  /**
+   * The non-private implementations of this klass and its superclasses, the closest first and one per signature,
+   * in the order they were found. A klass extends the list of its superclass instead of walking the chain again.
+   */
+  private ImmutableList<KlassMethod> resolveClassMethods() {
+    Table<MethodDescriptor, String, KlassMethod> methods = Tables.newCustomTable(new LinkedHashMap<>(),
+            LinkedHashMap::new);
+    List<KlassMethod> ordered = new ArrayList<>();
+    streamDeclaringMethods()
+            .filter(KlassMethod::isImplementation)
+            .filter(x -> !x.isPrivate())
+            .forEach(x -> {
+              if (methods.put(x.getDescriptor(), x.getMethodName(), x) == null) {
+                ordered.add(x);
+              }
+            });
+
+    Klass parent = superClass.get();
+    if (parent != null) {
+      for (KlassMethod x : parent.classMethods.get()) {
+        if (!methods.contains(x.getDescriptor(), x.getMethodName())) {
+          ordered.add(x);
+        }
       }
     }
 
-    return false;
+    return ImmutableList.copyOf(ordered);
+  }
+
+  /**
+   * The interfaces of this klass and its superclasses, the closest first.
+   */
+  private ImmutableSet<Klass> resolveClassInterfaces() {
+    ImmutableSet.Builder<Klass> builder = ImmutableSet.builder();
+    builder.addAll(interfaces.get());
+    Klass parent = superClass.get();
+    if (parent != null) {
+      builder.addAll(parent.classInterfaces.get());
+    }
+
+    return builder.build();
+  }
+
+  private ImmutableSet<KlassMethod> resolveInvocableMethods() {
+    // Ordered by declaration, so that the impacts of entry klasses are flattened in the same order in every session.
+    Table<MethodDescriptor, String, KlassMethod> methods = Tables.newCustomTable(new LinkedHashMap<>(),
+            LinkedHashMap::new);
+    Consumer<KlassMethod> adder = x -> methods.put(x.getDescriptor(), x.getMethodName(), x);
+    classMethods.get().forEach(adder);
+
+    BiFunction<KlassMethod, KlassMethod, KlassMethod> resolveDefaultMethods = (old, resolved) -> {
+      if (old == null) {
+        return resolved;
+      }
+      if (!old.getDeclaringClass().isInterface()) {
+        return old;
+      }
+
+      if (old.isOverriddenBy(resolved)) {
+        return resolved;
+      }
+      return old;
+    };
+
+    Set<Klass> interfaces = new LinkedHashSet<>(classInterfaces.get());
+    Deque<Klass> hierarchy = new LinkedList<>(interfaces);
+    while (!hierarchy.isEmpty()) {
+      Klass kls = hierarchy.removeFirst();
+      kls.streamDeclaringMethods()
+              .filter(KlassMethod::isImplementation)
+              .forEach(x -> methods
+                      .put(x.getDescriptor(), x.getMethodName(),
+                              resolveDefaultMethods
+                                      .apply(methods.get(x.getDescriptor(), x.getMethodName()), x)));
+
+      kls.streamInterfaces().filter(interfaces::add).forEach(hierarchy::addFirst);
+    }
+
+    return ImmutableSet.copyOf(methods.values());
+  }
+
+  /**
+   * Looks {@code klass} up in the supertypes of this klass. The supertypes are resolved once, so the test does not
+   * walk the hierarchy.
+   */
+  public boolean inherits(Klass klass) {
+    return getSupertypes().contains(klass);
   }
 
   public @NonNull Stream<Klass> streamInterfaces() {
@@ -61,6 +61,8 @@ public class KlassMethod implements Flaggable.MethodFlag {
 
   private final boolean isReachable;
 
+  private final int id;
+
   public KlassMethod(@NonNull Klass klass, @NonNull MethodSource x,
                      @NonNull AnalysisSession analysisSession) {
     this.declaringClass = klass;
@@ -71,6 +73,7 @@ public class KlassMethod implements Flaggable.MethodFlag {
     this.body = Suppliers.memoize(() -> x.getImpacts().apply(analysisSession));
     this.isPolymorphicSignature = x.isPolymorphicSignature();
     this.isReachable = klass.isReachable() && x.isReachable();
+    this.id = analysisSession.nextMethodId();
   }
 
 //  public KlassMethod(Klass declaringClass, IMethodDescriptor desc, AccessModifier accLevel,
@@ -86,6 +89,13 @@ public class KlassMethod implements Flaggable.MethodFlag {
     return isReachable;
   }
 
+  /**
+   * Returns the id of the method, which is unique and dense among the methods of its session.
+   */
+  public int getId() {
+    return id;
+  }
+
   public boolean isPolymorphicSignature() {
     return isPolymorphicSignature;
   }
@@ -55,7 +55,7 @@ public interface Suppliers {
   class MemorizingSupplier<@Nullable T> implements Supplier<T> {
 
     @Nullable
-    private Supplier<T> delegate;
+    private volatile Supplier<T> delegate;
     @Nullable
     private T value;
 
@@ -67,9 +67,15 @@ public interface Suppliers {
     @Override
     @Nullable
     public T get() {
+      // Klasses are resolved lazily, possibly from several planning threads at once.
       if (delegate != null) {
-        value = delegate.get();
-        delegate = null;
+        synchronized (this) {
+          Supplier<T> supplier = delegate;
+          if (supplier != null) {
+            value = supplier.get();
+            delegate = null;
+          }
+        }
       }
 
       return value;
@@ -0,0 +1,343 @@
+package org.orta.core.util.bitmap;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+final class ArrayContainer extends Container {
+
+  private char[] content;
+  private int cardinality;
+
+  ArrayContainer() {
+    this.content = new char[4];
+  }
+
+  ArrayContainer(char[] content, int cardinality) {
+    this.content = content;
+    this.cardinality = cardinality;
+  }
+
+  @Override
+  Container add(char x) {
+    int idx = Arrays.binarySearch(content, 0, cardinality, x);
+    if (idx >= 0) {
+      return this;
+    }
+
+    if (cardinality >= MAX_ARRAY_SIZE) {
+      return toBitmapContainer().add(x);
+    }
+
+    idx = -idx - 1;
+    if (cardinality == content.length) {
+      content = Arrays.copyOf(content, Math.min(MAX_ARRAY_SIZE, Math.max(4, cardinality * 2)));
+    }
+
+    System.arraycopy(content, idx, content, idx + 1, cardinality - idx);
+    content[idx] = x;
+    cardinality += 1;
+    return this;
+  }
+
+  @Override
+  boolean contains(char x) {
+    return Arrays.binarySearch(content, 0, cardinality, x) >= 0;
+  }
+
+  @Override
+  int cardinality() {
+    return cardinality;
+  }
+
+  @Override
+  Container and(Container o) {
+    char[] result = new char[Math.min(cardinality, o.cardinality())];
+    int size = 0;
+    if (o instanceof ArrayContainer) {
+      ArrayContainer rhs = (ArrayContainer) o;
+      int i = 0;
+      int j = 0;
+      while (i < cardinality && j < rhs.cardinality) {
+        char x = content[i];
+        char y = rhs.content[j];
+        if (x < y) {
+          i++;
+        } else if (x > y) {
+          j++;
+        } else {
+          result[size++] = x;
+          i++;
+          j++;
+        }
+      }
+    } else {
+      for (int i = 0; i < cardinality; i++) {
+        if (o.contains(content[i])) {
+          result[size++] = content[i];
+        }
+      }
+    }
+
+    return new ArrayContainer(result, size);
+  }
+
+  @Override
+  int andCardinality(Container o) {
+    int size = 0;
+    if (o instanceof ArrayContainer) {
+      ArrayContainer rhs = (ArrayContainer) o;
+      int i = 0;
+      int j = 0;
+      while (i < cardinality && j < rhs.cardinality) {
+        char x = content[i];
+        char y = rhs.content[j];
+        if (x < y) {
+          i++;
+        } else if (x > y) {
+          j++;
+        } else {
+          size++;
+          i++;
+          j++;
+        }
+      }
+    } else {
+      for (int i = 0; i < cardinality; i++) {
+        if (o.contains(content[i])) {
+          size++;
+        }
+      }
+    }
+
+    return size;
+  }
+
+  @Override
+  Container andNot(Container o) {
+    char[] result = new char[cardinality];
+    int size = 0;
+    if (o instanceof ArrayContainer) {
+      ArrayContainer rhs = (ArrayContainer) o;
+      int j = 0;
+      for (int i = 0; i < cardinality; i++) {
+        char x = content[i];
+        while (j < rhs.cardinality && rhs.content[j] < x) {
+          j++;
+        }
+
+        if (j >= rhs.cardinality || rhs.content[j] != x) {
+          result[size++] = x;
+        }
+      }
+    } else {
+      for (int i = 0; i < cardinality; i++) {
+        if (!o.contains(content[i])) {
+          result[size++] = content[i];
+        }
+      }
+    }
+
+    return new ArrayContainer(result, size);
+  }
+
+  @Override
+  Container or(Container o) {
+    if (!(o instanceof ArrayContainer)) {
+      return o.or(this);
+    }
+
+    ArrayContainer rhs = (ArrayContainer) o;
+    if (cardinality + rhs.cardinality > MAX_ARRAY_SIZE) {
+      return expand(toBitmapContainer().orArray(rhs));
+    }
+
+    char[] result = new char[cardinality + rhs.cardinality];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < cardinality && j < rhs.cardinality) {
+      char x = content[i];
+      char y = rhs.content[j];
+      if (x < y) {
+        result[size++] = x;
+        i++;
+      } else if (x > y) {
+        result[size++] = y;
+        j++;
+      } else {
+        result[size++] = x;
+        i++;
+        j++;
+      }
+    }
+
+    while (i < cardinality) {
+      result[size++] = content[i++];
+    }
+
+    while (j < rhs.cardinality) {
+      result[size++] = rhs.content[j++];
+    }
+
+    return new ArrayContainer(result, size);
+  }
+
+  @Override
+  long sum(int high, int[] weights) {
+    long sum = 0;
+    for (int i = 0; i < cardinality; i++) {
+      sum += weights[high | content[i]];
+    }
+
+    return sum;
+  }
+
+  @Override
+  long andSum(Container o, int high, int[] weights) {
+    long sum = 0;
+    if (o instanceof ArrayContainer) {
+      ArrayContainer rhs = (ArrayContainer) o;
+      int i = 0;
+      int j = 0;
+      while (i < cardinality && j < rhs.cardinality) {
+        char x = content[i];
+        char y = rhs.content[j];
+        if (x < y) {
+          i++;
+        } else if (x > y) {
+          j++;
+        } else {
+          sum += weights[high | x];
+          i++;
+          j++;
+        }
+      }
+    } else {
+      for (int i = 0; i < cardinality; i++) {
+        if (o.contains(content[i])) {
+          sum += weights[high | content[i]];
+        }
+      }
+    }
+
+    return sum;
+  }
+
+  @Override
+  int nextValue(int from) {
+    if (from > Character.MAX_VALUE) {
+      return -1;
+    }
+
+    int idx = Arrays.binarySearch(content, 0, cardinality, (char) from);
+    if (idx < 0) {
+      idx = -idx - 1;
+    }
+
+    return idx < cardinality ? content[idx] : -1;
+  }
+
+  @Override
+  void forEach(int high, IntConsumer consumer) {
+    for (int i = 0; i < cardinality; i++) {
+      consumer.accept(high | content[i]);
+    }
+  }
+
+  @Override
+  Container runOptimize() {
+    int runs = 0;
+    for (int i = 0; i < cardinality; i++) {
+      if (i == 0 || content[i] != content[i - 1] + 1) {
+        runs++;
+      }
+    }
+
+    if (RunContainer.sizeInBytes(runs) >= 2 * cardinality) {
+      return this;
+    }
+
+    char[] pairs = new char[2 * runs];
+    int run = -1;
+    for (int i = 0; i < cardinality; i++) {
+      if (i == 0 || content[i] != content[i - 1] + 1) {
+        run++;
+        pairs[2 * run] = content[i];
+        pairs[2 * run + 1] = 0;
+      } else {
+        pairs[2 * run + 1]++;
+      }
+    }
+
+    return new RunContainer(pairs, runs);
+  }
+
+  @Override
+  Container copy() {
+    return new ArrayContainer(Arrays.copyOf(content, Math.max(cardinality, 1)), cardinality);
+  }
+
+  @Override
+  BitmapContainer toBitmapContainer() {
+    BitmapContainer bitmap = new BitmapContainer();
+    for (int i = 0; i < cardinality; i++) {
+      bitmap.set(content[i]);
+    }
+
+    return bitmap;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj instanceof ArrayContainer) {
+      ArrayContainer o = (ArrayContainer) obj;
+      if (o.cardinality != cardinality) {
+        return false;
+      }
+
+      for (int i = 0; i < cardinality; i++) {
+        if (content[i] != o.content[i]) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+
+    return super.equals(obj);
+  }
+}
@@ -0,0 +1,348 @@
+package org.orta.core.util.bitmap;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.util.function.IntConsumer;
+
+final class BitmapContainer extends Container {
+
+  private final long[] words;
+  private int cardinality;
+
+  BitmapContainer() {
+    this(new long[BITMAP_WORDS], 0);
+  }
+
+  private BitmapContainer(long[] words, int cardinality) {
+    this.words = words;
+    this.cardinality = cardinality;
+  }
+
+  private static int cardinality(long[] words) {
+    int cardinality = 0;
+    for (long word : words) {
+      cardinality += Long.bitCount(word);
+    }
+
+    return cardinality;
+  }
+
+  // Both ends of the range [start, end] are inclusive.
+  private static long rangeMask(int word, int start, int end) {
+    int from = Math.max(start, word << 6) & 63;
+    int to = Math.min(end, (word << 6) + 63) & 63;
+    return (-1L >>> (63 - to)) & (-1L << from);
+  }
+
+  void set(char x) {
+    long mask = 1L << x;
+    int idx = x >>> 6;
+    if ((words[idx] & mask) == 0) {
+      words[idx] |= mask;
+      cardinality += 1;
+    }
+  }
+
+  void setRange(int start, int end) {
+    for (int w = start >>> 6; w <= end >>> 6; w++) {
+      long mask = rangeMask(w, start, end);
+      cardinality += Long.bitCount(mask & ~words[w]);
+      words[w] |= mask;
+    }
+  }
+
+  void clearRange(int start, int end) {
+    for (int w = start >>> 6; w <= end >>> 6; w++) {
+      long mask = rangeMask(w, start, end);
+      cardinality -= Long.bitCount(mask & words[w]);
+      words[w] &= ~mask;
+    }
+  }
+
+  int cardinalityInRange(int start, int end) {
+    int count = 0;
+    for (int w = start >>> 6; w <= end >>> 6; w++) {
+      count += Long.bitCount(rangeMask(w, start, end) & words[w]);
+    }
+
+    return count;
+  }
+
+  BitmapContainer andRange(int start, int end, BitmapContainer target) {
+    for (int w = start >>> 6; w <= end >>> 6; w++) {
+      long bits = rangeMask(w, start, end) & words[w];
+      target.cardinality += Long.bitCount(bits & ~target.words[w]);
+      target.words[w] |= bits;
+    }
+
+    return target;
+  }
+
+  BitmapContainer orArray(ArrayContainer o) {
+    BitmapContainer result = new BitmapContainer(words.clone(), cardinality);
+    for (int x = o.nextValue(0); x >= 0; x = o.nextValue(x + 1)) {
+      result.set((char) x);
+    }
+
+    return result;
+  }
+
+  @Override
+  Container add(char x) {
+    set(x);
+    return this;
+  }
+
+  @Override
+  boolean contains(char x) {
+    return (words[x >>> 6] & (1L << x)) != 0;
+  }
+
+  @Override
+  int cardinality() {
+    return cardinality;
+  }
+
+  @Override
+  Container and(Container o) {
+    if (o instanceof BitmapContainer) {
+      long[] rhs = ((BitmapContainer) o).words;
+      long[] result = new long[BITMAP_WORDS];
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        result[i] = words[i] & rhs[i];
+      }
+
+      return expand(new BitmapContainer(result, cardinality(result)));
+    }
+
+    return o.and(this);
+  }
+
+  @Override
+  int andCardinality(Container o) {
+    if (o instanceof BitmapContainer) {
+      long[] rhs = ((BitmapContainer) o).words;
+      int count = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        count += Long.bitCount(words[i] & rhs[i]);
+      }
+
+      return count;
+    }
+
+    return o.andCardinality(this);
+  }
+
+  @Override
+  Container andNot(Container o) {
+    if (o instanceof BitmapContainer) {
+      long[] rhs = ((BitmapContainer) o).words;
+      long[] result = new long[BITMAP_WORDS];
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        result[i] = words[i] & ~rhs[i];
+      }
+
+      return expand(new BitmapContainer(result, cardinality(result)));
+    }
+
+    BitmapContainer result = new BitmapContainer(words.clone(), cardinality);
+    if (o instanceof RunContainer) {
+      ((RunContainer) o).clearFrom(result);
+    } else {
+      for (int x = o.nextValue(0); x >= 0; x = o.nextValue(x + 1)) {
+        long mask = 1L << x;
+        int idx = x >>> 6;
+        if ((result.words[idx] & mask) != 0) {
+          result.words[idx] &= ~mask;
+          result.cardinality -= 1;
+        }
+      }
+    }
+
+    return expand(result);
+  }
+
+  @Override
+  Container or(Container o) {
+    if (o instanceof BitmapContainer) {
+      long[] rhs = ((BitmapContainer) o).words;
+      long[] result = new long[BITMAP_WORDS];
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        result[i] = words[i] | rhs[i];
+      }
+
+      return new BitmapContainer(result, cardinality(result));
+    }
+
+    if (o instanceof ArrayContainer) {
+      return orArray((ArrayContainer) o);
+    }
+
+    return o.or(this);
+  }
+
+  @Override
+  long sum(int high, int[] weights) {
+    long sum = 0;
+    for (int i = 0; i < BITMAP_WORDS; i++) {
+      sum += sum(high | (i << 6), words[i], weights);
+    }
+
+    return sum;
+  }
+
+  @Override
+  long andSum(Container o, int high, int[] weights) {
+    if (o instanceof BitmapContainer) {
+      long[] rhs = ((BitmapContainer) o).words;
+      long sum = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        sum += sum(high | (i << 6), words[i] & rhs[i], weights);
+      }
+
+      return sum;
+    }
+
+    return o.andSum(this, high, weights);
+  }
+
+  // Both ends of the range [start, end] are inclusive.
+  long andSumRange(int start, int end, int high, int[] weights) {
+    long sum = 0;
+    for (int w = start >>> 6; w <= end >>> 6; w++) {
+      sum += sum(high | (w << 6), rangeMask(w, start, end) & words[w], weights);
+    }
+
+    return sum;
+  }
+
+  private static long sum(int base, long word, int[] weights) {
+    long sum = 0;
+    while (word != 0) {
+      sum += weights[base + Long.numberOfTrailingZeros(word)];
+      word &= word - 1;
+    }
+
+    return sum;
+  }
+
+  @Override
+  int nextValue(int from) {
+    if (from > Character.MAX_VALUE) {
+      return -1;
+    }
+
+    int idx = from >>> 6;
+    long word = words[idx] & (-1L << from);
+    while (true) {
+      if (word != 0) {
+        return (idx << 6) + Long.numberOfTrailingZeros(word);
+      }
+
+      if (++idx == BITMAP_WORDS) {
+        return -1;
+      }
+
+      word = words[idx];
+    }
+  }
+
+  @Override
+  void forEach(int high, IntConsumer consumer) {
+    for (int i = 0; i < BITMAP_WORDS; i++) {
+      long word = words[i];
+      while (word != 0) {
+        consumer.accept(high | (i << 6) + Long.numberOfTrailingZeros(word));
+        word &= word - 1;
+      }
+    }
+  }
+
+  @Override
+  Container runOptimize() {
+    int runs = 0;
+    for (int i = 0; i < BITMAP_WORDS; i++) {
+      long word = words[i];
+      long next = i + 1 < BITMAP_WORDS ? words[i + 1] : 0;
+      // count the positions where a run ends.
+      runs += Long.bitCount(word & ~(word >>> 1 | next << 63));
+    }
+
+    if (RunContainer.sizeInBytes(runs) >= 8 * BITMAP_WORDS) {
+      return this;
+    }
+
+    char[] pairs = new char[2 * runs];
+    int run = 0;
+    int x = nextValue(0);
+    while (x >= 0) {
+      int end = x;
+      while (end < Character.MAX_VALUE && contains((char) (end + 1))) {
+        end++;
+      }
+
+      pairs[2 * run] = (char) x;
+      pairs[2 * run + 1] = (char) (end - x);
+      run++;
+      x = end < Character.MAX_VALUE ? nextValue(end + 1) : -1;
+    }
+
+    return new RunContainer(pairs, runs);
+  }
+
+  @Override
+  Container copy() {
+    return new BitmapContainer(words.clone(), cardinality);
+  }
+
+  @Override
+  BitmapContainer toBitmapContainer() {
+    return this;
+  }
+
+  ArrayContainer toArrayContainer() {
+    char[] content = new char[Math.max(cardinality, 1)];
+    int size = 0;
+    for (int i = 0; i < BITMAP_WORDS; i++) {
+      long word = words[i];
+      while (word != 0) {
+        content[size++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+        word &= word - 1;
+      }
+    }
+
+    return new ArrayContainer(content, size);
+  }
+}
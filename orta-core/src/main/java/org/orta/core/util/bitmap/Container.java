@@ -0,0 +1,127 @@
+package org.orta.core.util.bitmap;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.util.function.IntConsumer;
+
+/**
+ * A set of the lower 16 bits of the values that share the same upper 16 bits in a {@link RoaringBitSet}.
+ * Every operation returns a new container, except {@link #add(char)} that may update this container.
+ */
+abstract class Container {
+
+  static final int MAX_ARRAY_SIZE = 4096;
+  static final int BITMAP_WORDS = 1 << 10;
+
+  static Container expand(BitmapContainer bitmap) {
+    return bitmap.cardinality() <= MAX_ARRAY_SIZE ? bitmap.toArrayContainer() : bitmap;
+  }
+
+  abstract Container add(char x);
+
+  abstract boolean contains(char x);
+
+  abstract int cardinality();
+
+  abstract Container and(Container o);
+
+  abstract int andCardinality(Container o);
+
+  abstract Container andNot(Container o);
+
+  abstract Container or(Container o);
+
+  /**
+   * @return the sum of {@code weights[high | x]} over the values {@code x} of this container.
+   */
+  abstract long sum(int high, int[] weights);
+
+  /**
+   * @return the sum of {@code weights[high | x]} over the values {@code x} in both containers.
+   */
+  abstract long andSum(Container o, int high, int[] weights);
+
+  /**
+   * @return the smallest value that is greater than or equal to {@code from}, or -1 if there is no such value.
+   */
+  abstract int nextValue(int from);
+
+  abstract void forEach(int high, IntConsumer consumer);
+
+  abstract Container runOptimize();
+
+  abstract Container copy();
+
+  abstract BitmapContainer toBitmapContainer();
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+
+    if (!(obj instanceof Container)) {
+      return false;
+    }
+
+    Container o = (Container) obj;
+    if (o.cardinality() != cardinality()) {
+      return false;
+    }
+
+    int x = nextValue(0);
+    int y = o.nextValue(0);
+    while (x >= 0) {
+      if (x != y) {
+        return false;
+      }
+
+      x = nextValue(x + 1);
+      y = o.nextValue(y + 1);
+    }
+
+    return y < 0;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    for (int x = nextValue(0); x >= 0; x = nextValue(x + 1)) {
+      hash = 31 * hash + x;
+    }
+
+    return hash;
+  }
+}
@@ -0,0 +1,343 @@
+package org.orta.core.util.bitmap;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of non-negative integers. Values are partitioned by their upper 16 bits, and each
+ * partition is stored as a sorted array, a plain bitmap or a list of runs depending on its density,
+ * which keeps sparse and clustered sets small and lets set operations skip absent partitions.
+ *
+ * <p>Unlike {@link java.util.BitSet}, the operations return new sets and never modify their operands.
+ */
+public final class RoaringBitSet {
+
+  private char[] keys;
+  private Container[] containers;
+  private int size;
+
+  public RoaringBitSet() {
+    this(new char[4], new Container[4], 0);
+  }
+
+  private RoaringBitSet(char[] keys, Container[] containers, int size) {
+    this.keys = keys;
+    this.containers = containers;
+    this.size = size;
+  }
+
+  private static char high(int x) {
+    return (char) (x >>> 16);
+  }
+
+  private static char low(int x) {
+    return (char) x;
+  }
+
+  private static void checkIndex(int x) {
+    if (x < 0) {
+      throw new IndexOutOfBoundsException("bitIndex < 0: " + x);
+    }
+  }
+
+  private int indexOf(char key) {
+    // fast path for the common case where the values are appended in order.
+    if (size > 0 && keys[size - 1] == key) {
+      return size - 1;
+    }
+
+    return Arrays.binarySearch(keys, 0, size, key);
+  }
+
+  public RoaringBitSet set(int x) {
+    checkIndex(x);
+    char key = high(x);
+    int idx = indexOf(key);
+    if (idx >= 0) {
+      containers[idx] = containers[idx].add(low(x));
+      return this;
+    }
+
+    idx = -idx - 1;
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, size * 2);
+      containers = Arrays.copyOf(containers, size * 2);
+    }
+
+    System.arraycopy(keys, idx, keys, idx + 1, size - idx);
+    System.arraycopy(containers, idx, containers, idx + 1, size - idx);
+    keys[idx] = key;
+    containers[idx] = new ArrayContainer().add(low(x));
+    size += 1;
+    return this;
+  }
+
+  public boolean get(int x) {
+    checkIndex(x);
+    int idx = indexOf(high(x));
+    return idx >= 0 && containers[idx].contains(low(x));
+  }
+
+  public int cardinality() {
+    int cardinality = 0;
+    for (int i = 0; i < size; i++) {
+      cardinality += containers[i].cardinality();
+    }
+
+    return cardinality;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return the smallest value that is greater than or equal to {@code from}, or -1 if there is no such value.
+   */
+  public int nextSetBit(int from) {
+    checkIndex(from);
+    char key = high(from);
+    int idx = Arrays.binarySearch(keys, 0, size, key);
+    if (idx >= 0) {
+      int value = containers[idx].nextValue(low(from));
+      if (value >= 0) {
+        return key << 16 | value;
+      }
+
+      idx += 1;
+    } else {
+      idx = -idx - 1;
+    }
+
+    return idx < size ? keys[idx] << 16 | containers[idx].nextValue(0) : -1;
+  }
+
+  public void forEach(IntConsumer consumer) {
+    for (int i = 0; i < size; i++) {
+      containers[i].forEach(keys[i] << 16, consumer);
+    }
+  }
+
+  public RoaringBitSet intersect(RoaringBitSet o) {
+    int capacity = Math.max(1, Math.min(size, o.size));
+    RoaringBitSet result = new RoaringBitSet(new char[capacity], new Container[capacity], 0);
+    int i = 0;
+    int j = 0;
+    while (i < size && j < o.size) {
+      if (keys[i] < o.keys[j]) {
+        i++;
+      } else if (keys[i] > o.keys[j]) {
+        j++;
+      } else {
+        result.append(keys[i], containers[i].and(o.containers[j]));
+        i++;
+        j++;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Counts the values in both sets without materializing the intersection.
+   */
+  public int intersectionCardinality(RoaringBitSet o) {
+    int cardinality = 0;
+    int i = 0;
+    int j = 0;
+    while (i < size && j < o.size) {
+      if (keys[i] < o.keys[j]) {
+        i++;
+      } else if (keys[i] > o.keys[j]) {
+        j++;
+      } else {
+        cardinality += containers[i].andCardinality(o.containers[j]);
+        i++;
+        j++;
+      }
+    }
+
+    return cardinality;
+  }
+
+  /**
+   * @return the sum of {@code weights[x]} over the values {@code x} of this set.
+   */
+  public long sum(int[] weights) {
+    long sum = 0;
+    for (int i = 0; i < size; i++) {
+      sum += containers[i].sum(keys[i] << 16, weights);
+    }
+
+    return sum;
+  }
+
+  /**
+   * Sums {@code weights[x]} over the values {@code x} in both sets without materializing the intersection.
+   */
+  public long intersectionSum(RoaringBitSet o, int[] weights) {
+    long sum = 0;
+    int i = 0;
+    int j = 0;
+    while (i < size && j < o.size) {
+      if (keys[i] < o.keys[j]) {
+        i++;
+      } else if (keys[i] > o.keys[j]) {
+        j++;
+      } else {
+        sum += containers[i].andSum(o.containers[j], keys[i] << 16, weights);
+        i++;
+        j++;
+      }
+    }
+
+    return sum;
+  }
+
+  public RoaringBitSet difference(RoaringBitSet o) {
+    RoaringBitSet result = new RoaringBitSet(new char[Math.max(1, size)], new Container[Math.max(1, size)], 0);
+    int j = 0;
+    for (int i = 0; i < size; i++) {
+      while (j < o.size && o.keys[j] < keys[i]) {
+        j++;
+      }
+
+      if (j < o.size && o.keys[j] == keys[i]) {
+        result.append(keys[i], containers[i].andNot(o.containers[j]));
+      } else {
+        result.append(keys[i], containers[i].copy());
+      }
+    }
+
+    return result;
+  }
+
+  public RoaringBitSet union(RoaringBitSet o) {
+    int capacity = Math.max(1, size + o.size);
+    RoaringBitSet result = new RoaringBitSet(new char[capacity], new Container[capacity], 0);
+    int i = 0;
+    int j = 0;
+    while (i < size && j < o.size) {
+      if (keys[i] < o.keys[j]) {
+        result.append(keys[i], containers[i].copy());
+        i++;
+      } else if (keys[i] > o.keys[j]) {
+        result.append(o.keys[j], o.containers[j].copy());
+        j++;
+      } else {
+        result.append(keys[i], containers[i].or(o.containers[j]));
+        i++;
+        j++;
+      }
+    }
+
+    for (; i < size; i++) {
+      result.append(keys[i], containers[i].copy());
+    }
+
+    for (; j < o.size; j++) {
+      result.append(o.keys[j], o.containers[j].copy());
+    }
+
+    return result;
+  }
+
+  // The caller must append the keys in increasing order, and reserve enough capacity.
+  private void append(char key, Container container) {
+    if (container.cardinality() == 0) {
+      return;
+    }
+
+    keys[size] = key;
+    containers[size] = container;
+    size += 1;
+  }
+
+  /**
+   * Converts the containers to run-length encoding where it is smaller. This is worth calling once a set is
+   * fully populated, since an updated run container is expanded again.
+   */
+  public RoaringBitSet runOptimize() {
+    for (int i = 0; i < size; i++) {
+      containers[i] = containers[i].runOptimize();
+    }
+
+    return this;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (!(obj instanceof RoaringBitSet)) {
+      return false;
+    }
+
+    RoaringBitSet o = (RoaringBitSet) obj;
+    if (o.size != size) {
+      return false;
+    }
+
+    for (int i = 0; i < size; i++) {
+      if (keys[i] != o.keys[i] || !containers[i].equals(o.containers[i])) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 1;
+    for (int i = 0; i < size; i++) {
+      hash = 31 * (31 * hash + keys[i]) + containers[i].hashCode();
+    }
+
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    StringJoiner joiner = new StringJoiner(", ", "{", "}");
+    forEach(x -> joiner.add(Integer.toString(x)));
+    return joiner.toString();
+  }
+}
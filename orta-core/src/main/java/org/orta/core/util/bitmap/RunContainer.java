@@ -0,0 +1,301 @@
+package org.orta.core.util.bitmap;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import java.util.function.IntConsumer;
+
+/**
+ * Stores values as runs of (start, length - 1) pairs. Run containers are only created by
+ * {@link Container#runOptimize()}, and are expanded again when they are updated.
+ */
+final class RunContainer extends Container {
+
+  private final char[] runs;
+  private final int size;
+  private final int cardinality;
+
+  RunContainer(char[] runs, int size) {
+    this.runs = runs;
+    this.size = size;
+    int cardinality = 0;
+    for (int i = 0; i < size; i++) {
+      cardinality += length(i) + 1;
+    }
+    this.cardinality = cardinality;
+  }
+
+  static int sizeInBytes(int runs) {
+    return 2 + 4 * runs;
+  }
+
+  private int start(int i) {
+    return runs[2 * i];
+  }
+
+  private int length(int i) {
+    return runs[2 * i + 1];
+  }
+
+  private int end(int i) {
+    return start(i) + length(i);
+  }
+
+  // Returns the index of the last run that starts at or before x, or -1.
+  private int floorRun(int x) {
+    int lo = 0;
+    int hi = size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (start(mid) <= x) {
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+
+    return hi;
+  }
+
+  private Container expand() {
+    BitmapContainer bitmap = new BitmapContainer();
+    for (int i = 0; i < size; i++) {
+      bitmap.setRange(start(i), end(i));
+    }
+
+    return expand(bitmap);
+  }
+
+  void clearFrom(BitmapContainer bitmap) {
+    for (int i = 0; i < size; i++) {
+      bitmap.clearRange(start(i), end(i));
+    }
+  }
+
+  @Override
+  Container add(char x) {
+    if (contains(x)) {
+      return this;
+    }
+
+    return expand().add(x);
+  }
+
+  @Override
+  boolean contains(char x) {
+    int idx = floorRun(x);
+    return idx >= 0 && x <= end(idx);
+  }
+
+  @Override
+  int cardinality() {
+    return cardinality;
+  }
+
+  @Override
+  Container and(Container o) {
+    if (o instanceof RunContainer) {
+      RunContainer rhs = (RunContainer) o;
+      char[] result = new char[2 * (size + rhs.size)];
+      int count = 0;
+      int i = 0;
+      int j = 0;
+      while (i < size && j < rhs.size) {
+        int start = Math.max(start(i), rhs.start(j));
+        int end = Math.min(end(i), rhs.end(j));
+        if (start <= end) {
+          result[2 * count] = (char) start;
+          result[2 * count + 1] = (char) (end - start);
+          count++;
+        }
+
+        if (end(i) < rhs.end(j)) {
+          i++;
+        } else {
+          j++;
+        }
+      }
+
+      return new RunContainer(result, count);
+    }
+
+    if (o instanceof BitmapContainer) {
+      BitmapContainer bitmap = (BitmapContainer) o;
+      BitmapContainer result = new BitmapContainer();
+      for (int i = 0; i < size; i++) {
+        bitmap.andRange(start(i), end(i), result);
+      }
+
+      return expand(result);
+    }
+
+    return o.and(this);
+  }
+
+  @Override
+  int andCardinality(Container o) {
+    int count = 0;
+    if (o instanceof RunContainer) {
+      RunContainer rhs = (RunContainer) o;
+      int i = 0;
+      int j = 0;
+      while (i < size && j < rhs.size) {
+        int start = Math.max(start(i), rhs.start(j));
+        int end = Math.min(end(i), rhs.end(j));
+        if (start <= end) {
+          count += end - start + 1;
+        }
+
+        if (end(i) < rhs.end(j)) {
+          i++;
+        } else {
+          j++;
+        }
+      }
+
+      return count;
+    }
+
+    if (o instanceof BitmapContainer) {
+      BitmapContainer bitmap = (BitmapContainer) o;
+      for (int i = 0; i < size; i++) {
+        count += bitmap.cardinalityInRange(start(i), end(i));
+      }
+
+      return count;
+    }
+
+    return o.andCardinality(this);
+  }
+
+  @Override
+  Container andNot(Container o) {
+    return expand().andNot(o);
+  }
+
+  @Override
+  Container or(Container o) {
+    return expand().or(o);
+  }
+
+  @Override
+  long sum(int high, int[] weights) {
+    long sum = 0;
+    for (int i = 0; i < size; i++) {
+      for (int x = start(i), end = end(i); x <= end; x++) {
+        sum += weights[high | x];
+      }
+    }
+
+    return sum;
+  }
+
+  @Override
+  long andSum(Container o, int high, int[] weights) {
+    long sum = 0;
+    if (o instanceof RunContainer) {
+      RunContainer rhs = (RunContainer) o;
+      int i = 0;
+      int j = 0;
+      while (i < size && j < rhs.size) {
+        for (int x = Math.max(start(i), rhs.start(j)), end = Math.min(end(i), rhs.end(j)); x <= end; x++) {
+          sum += weights[high | x];
+        }
+
+        if (end(i) < rhs.end(j)) {
+          i++;
+        } else {
+          j++;
+        }
+      }
+
+      return sum;
+    }
+
+    if (o instanceof BitmapContainer) {
+      BitmapContainer bitmap = (BitmapContainer) o;
+      for (int i = 0; i < size; i++) {
+        sum += bitmap.andSumRange(start(i), end(i), high, weights);
+      }
+
+      return sum;
+    }
+
+    return o.andSum(this, high, weights);
+  }
+
+  @Override
+  int nextValue(int from) {
+    if (from > Character.MAX_VALUE) {
+      return -1;
+    }
+
+    int idx = floorRun(from);
+    if (idx >= 0 && from <= end(idx)) {
+      return from;
+    }
+
+    return idx + 1 < size ? start(idx + 1) : -1;
+  }
+
+  @Override
+  void forEach(int high, IntConsumer consumer) {
+    for (int i = 0; i < size; i++) {
+      for (int x = start(i), end = end(i); x <= end; x++) {
+        consumer.accept(high | x);
+      }
+    }
+  }
+
+  @Override
+  Container runOptimize() {
+    return this;
+  }
+
+  @Override
+  Container copy() {
+    // Run containers are never updated in place.
+    return this;
+  }
+
+  @Override
+  BitmapContainer toBitmapContainer() {
+    BitmapContainer bitmap = new BitmapContainer();
+    for (int i = 0; i < size; i++) {
+      bitmap.setRange(start(i), end(i));
+    }
+
+    return bitmap;
+  }
+}
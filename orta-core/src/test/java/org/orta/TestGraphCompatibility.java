@@ -35,10 +35,14 @@ package org.orta;
 
 
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import com.google.common.collect.Streams;
 import com.google.common.graph.EndpointPair;
 import org.orta.core.cg.CallGraph;
 import org.orta.core.cg.ORTACallGraphBuilder;
+import org.orta.core.cg.ORTASetting;
+import org.orta.core.cg.PlanningStrategy;
 import org.orta.core.cg.rta.RTA;
 import org.orta.core.type.AnalysisSession;
 import org.orta.core.type.TypeHelper;
@@ -47,17 +51,25 @@ import org.orta.core.type.klass.KlassMethod;
 import org.junit.jupiter.api.Test;
 import sample.Test1;
 import sample.Test1.Test2;
+import sample.TestA;
+import sample.TestB;
+import sample.TestC;
+import sample.TestD;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringJoiner;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.orta.Utils.assertStreamEquals;
 
 class TestGraphCompatibility {
 
@@ -93,21 +105,130 @@ class TestGraphCompatibility {
     }
   }
 
-  @Test
-  void testGraphCompatibity() {
-    RTA rta = RTA.get();
-
-    Set<Klass> klasses = new HashSet<>();
+  /**
+   * More than two entry klasses, so that the graphs are constructed from a plan rather than separately.
+   */
+  private Set<Klass> entryKlasses() {
+    Set<Klass> klasses = new LinkedHashSet<>();
     klasses.add(session.getOrCreateKlass(Test1.class));
     klasses.add(session.getOrCreateKlass(Test2.class));
-    Map<String, CallGraph> cg = ORTACallGraphBuilder.build(session, klasses);
+    klasses.add(session.getOrCreateKlass(TestA.class));
+    klasses.add(session.getOrCreateKlass(TestB.class));
+    klasses.add(session.getOrCreateKlass(TestC.class));
+    klasses.add(session.getOrCreateKlass(TestD.class));
+    return klasses;
+  }
+
+  /**
+   * Checks the graph of each entry klass against the graph of RTA run for the klass alone.
+   */
+  private void checkAgainstRTA(Map<String, CallGraph> cg) {
+    RTA rta = RTA.get();
+    assertEquals(entryKlasses().size(), cg.size());
     for (Entry<String, CallGraph> entry : cg.entrySet()) {
       Klass kls = session.getOrCreateKlass(entry.getKey().replace(".", "/"));
       CallGraph rtaGraph = rta.createCallGraph(session, Collections.singleton(kls),
               TypeHelper.resolveInvocableMethods(kls));
       CallGraph ortaGraph = entry.getValue();
+      assertStreamEquals(ImmutableSet.copyOf(rtaGraph.nodes()), Streams.stream(ortaGraph.nodes()));
       check(ortaGraph.edges(), rtaGraph.edges(), entry.getKey() + ": ORTA");
       check(rtaGraph.edges(), ortaGraph.edges(), entry.getKey() + ": RTA");
     }
   }
+
+  /**
+   * Checks that the graphs of the same plan have the same nodes and edges for each entry klass.
+   */
+  private static void checkSame(Map<String, CallGraph> expected, Map<String, CallGraph> actual) {
+    assertEquals(expected.keySet(), actual.keySet());
+    for (Entry<String, CallGraph> entry : expected.entrySet()) {
+      CallGraph graph = actual.get(entry.getKey());
+      assertStreamEquals(ImmutableSet.copyOf(entry.getValue().nodes()), Streams.stream(graph.nodes()));
+      assertStreamEquals(ImmutableSet.copyOf(entry.getValue().edges()), graph.edges().stream());
+    }
+  }
+
+  @Test
+  void testGraphCompatibity() {
+    checkAgainstRTA(ORTACallGraphBuilder.build(session, entryKlasses()));
+  }
+
+  @Test
+  void testParallelConstruction() {
+    checkSame(ORTACallGraphBuilder.build(session, entryKlasses()),
+            ORTACallGraphBuilder.build(session, entryKlasses(), new ORTASetting().parallelConstruction(4)));
+  }
+
+  @Test
+  void testAgglomerativePlanning() {
+    checkAgainstRTA(ORTACallGraphBuilder.build(session, entryKlasses(),
+            new ORTASetting().planningStrategy(PlanningStrategy.agglomerative())));
+  }
+
+  @Test
+  void testApproximatePlanning() {
+    checkAgainstRTA(ORTACallGraphBuilder.build(session, entryKlasses(), new ORTASetting().approximatePlanning()));
+  }
+
+  /**
+   * Checks that the graphs without edges have the same nodes as the full graphs, and refuse the queries that need
+   * the edges.
+   */
+  private static void checkReachabilityOnly(Map<String, CallGraph> expected, Map<String, CallGraph> actual) {
+    assertEquals(expected.keySet(), actual.keySet());
+    for (Entry<String, CallGraph> entry : expected.entrySet()) {
+      CallGraph graph = actual.get(entry.getKey());
+      assertStreamEquals(ImmutableSet.copyOf(entry.getValue().nodes()), Streams.stream(graph.nodes()));
+
+      KlassMethod node = graph.nodes().next();
+      assertThrows(IllegalStateException.class, graph::edges);
+      assertThrows(IllegalStateException.class, () -> graph.getCallersOf(node));
+      assertThrows(IllegalStateException.class, () -> graph.successors(node));
+      assertThrows(IllegalStateException.class, () -> graph.getReachables(node));
+      assertThrows(IllegalStateException.class, () -> graph.getReachables(Collections.singleton(node)));
+    }
+  }
+
+  @Test
+  void testReachabilityOnly() {
+    checkReachabilityOnly(ORTACallGraphBuilder.build(session, entryKlasses()),
+            ORTACallGraphBuilder.build(session, entryKlasses(), new ORTASetting().reachabilityOnly(true)));
+
+    Map<String, CallGraph> expected = new HashMap<>();
+    Map<String, CallGraph> actual = new HashMap<>();
+    for (Klass kls : entryKlasses()) {
+      Set<KlassMethod> entries = TypeHelper.resolveInvocableMethods(kls);
+      expected.put(kls.toString(), RTA.get().createCallGraph(session, Collections.singleton(kls), entries));
+      actual.put(kls.toString(), RTA.reachabilityOnly().createCallGraph(session, Collections.singleton(kls), entries));
+    }
+
+    checkReachabilityOnly(expected, actual);
+  }
+
+  @Test
+  void testParallelPlanning() {
+    // The impacts of the entry klasses are the same however they are flattened, so the plan is the same.
+    checkSame(ORTACallGraphBuilder.build(session, entryKlasses()),
+            ORTACallGraphBuilder.build(session, entryKlasses(), new ORTASetting().parallelPlanning(4)));
+  }
+
+  @Test
+  void testWorkWeightedPlanning() {
+    checkAgainstRTA(ORTACallGraphBuilder.build(session, entryKlasses(), new ORTASetting().workWeightedPlanning(true)));
+  }
+
+  @Test
+  void testMemoryBudget() {
+    // The used heap is always over the budget, so the children of each layer are constructed one after another.
+    checkSame(ORTACallGraphBuilder.build(session, entryKlasses()), ORTACallGraphBuilder.build(session, entryKlasses(),
+            new ORTASetting().parallelConstruction(4).memoryBudget(1)));
+  }
+
+  @Test
+  void testSeparateFallback() {
+    // No plan shares all the work, so RTA is run separately for each entry klass.
+    checkAgainstRTA(ORTACallGraphBuilder.build(session, entryKlasses(), new ORTASetting().separateFallback(1)));
+    // A plan that shares anything is constructed after its estimate is checked.
+    checkAgainstRTA(ORTACallGraphBuilder.build(session, entryKlasses(), new ORTASetting().separateFallback(0.01)));
+  }
 }
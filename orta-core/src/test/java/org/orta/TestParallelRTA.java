@@ -0,0 +1,104 @@
+package org.orta;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Streams;
+import org.orta.core.cg.CallGraph;
+import org.orta.core.cg.rta.RTA;
+import org.orta.core.type.AnalysisSession;
+import org.orta.core.type.TypeHelper;
+import org.orta.core.type.klass.Klass;
+import org.orta.core.type.klass.KlassMethod;
+import org.junit.jupiter.api.Test;
+import sample.Implementation;
+import sample.TestA;
+import sample.TestB;
+import sample.TestC;
+import sample.TestD;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.orta.Utils.assertStreamEquals;
+
+class TestParallelRTA {
+
+  private final AnalysisSession session = new AnalysisSetting()
+          .addClassPath(ClassLoader.getSystemResource("."))
+          .excludePackages(new String[]{"java\\/awt\\/.*", "javax\\/swing\\/.*", "sun\\/awt\\/.*",
+                  "sun\\/swing\\/.*", "com\\/sun\\/.*", "sun\\/.*", "java\\/security\\/.*"})
+          .build();
+
+  TestParallelRTA() throws IOException, URISyntaxException {
+  }
+
+  private static void check(CallGraph expected, CallGraph actual) {
+    assertStreamEquals(ImmutableSet.copyOf(expected.nodes()), Streams.stream(actual.nodes()));
+    assertStreamEquals(ImmutableSet.copyOf(expected.edges()), actual.edges().stream());
+  }
+
+  @Test
+  void testAgainstSequential() {
+    Set<Klass> klasses = new LinkedHashSet<>();
+    List<KlassMethod> entries = new ArrayList<>();
+    for (Class<?> test : new Class<?>[]{TestA.class, TestC.class}) {
+      Klass klass = session.getOrCreateKlass(test);
+      klasses.add(klass);
+      entries.addAll(TypeHelper.resolveInvocableMethods(klass));
+    }
+
+    RTA rta = RTA.get();
+    CallGraph sequential = rta.createCallGraph(session, klasses, entries);
+    CallGraph parallel = rta.createCallGraph(session, klasses, entries, 4);
+    check(sequential, parallel);
+
+    // The parallel graph is extended by the sequential engine, and must continue from the same state. TestB
+    // instantiates B, which dispatches the call sites of A.getA() in the graph of TestA again.
+    for (Class<?> added : new Class<?>[]{TestB.class, TestD.class, Implementation.class}) {
+      for (KlassMethod m : TypeHelper.resolveInvocableMethods(session.getOrCreateKlass(added))) {
+        sequential.addEntry(m);
+        parallel.addEntry(m);
+      }
+
+      check(sequential, parallel);
+    }
+  }
+}
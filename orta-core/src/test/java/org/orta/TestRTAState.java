@@ -0,0 +1,168 @@
+package org.orta;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.graph.EndpointPair;
+import org.orta.core.cg.CallGraph;
+import org.orta.core.cg.rta.RTA;
+import org.orta.core.cg.rta.RTAState;
+import org.orta.core.type.AnalysisSession;
+import org.orta.core.type.TypeHelper;
+import org.orta.core.type.klass.Klass;
+import org.orta.core.type.klass.KlassMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestRTAState {
+
+  private static final String[] EXCLUSIONS = {"java\\/awt\\/.*", "javax\\/swing\\/.*", "sun\\/awt\\/.*",
+          "sun\\/swing\\/.*", "com\\/sun\\/.*", "sun\\/.*", "java\\/security\\/.*"};
+  private static final ImmutableSet<String> CHANGED = ImmutableSet.of("sample.TestC.testC()V");
+
+  @TempDir
+  Path dir;
+
+  /**
+   * The nodes and edges of a graph by their signatures, so that graphs of different sessions can be compared.
+   */
+  private static final class Graph {
+    private final Set<String> nodes = new TreeSet<>();
+    private final Set<String> edges = new TreeSet<>();
+
+    Graph(CallGraph cg) {
+      for (Iterator<KlassMethod> it = cg.nodes(); it.hasNext(); ) {
+        nodes.add(it.next().getSignature());
+      }
+
+      for (EndpointPair<KlassMethod> edge : cg.edges()) {
+        edges.add(edge.source().getSignature() + " -> " + edge.target().getSignature());
+      }
+    }
+  }
+
+  /**
+   * Creates the graph of {@code tests} in the classes of {@code root}, or updates it from the state in
+   * {@code previous}, and writes the state of the graph to {@code state}.
+   */
+  private Graph build(Path root, List<String> tests, Path previous, Set<String> changed, Path state)
+          throws IOException {
+    try (AnalysisSession session = new AnalysisSetting().addClassPath(root).excludePackages(EXCLUSIONS).build()) {
+      Set<Klass> klasses = new LinkedHashSet<>();
+      List<KlassMethod> entries = new ArrayList<>();
+      for (String test : tests) {
+        Klass klass = session.getOrCreateKlass("sample/" + test);
+        klasses.add(klass);
+        entries.addAll(TypeHelper.resolveInvocableMethods(klass));
+      }
+
+      RTA rta = RTA.get();
+      CallGraph cg = previous == null ? rta.createCallGraph(session, klasses, entries)
+              : rta.updateCallGraph(session, RTAState.read(previous), changed, klasses, entries);
+      RTAState captured = rta.captureState(session, cg, klasses, entries);
+      assertNotNull(captured);
+      captured.write(state);
+      return new Graph(cg);
+    }
+  }
+
+  private static void check(Graph expected, Graph actual) {
+    Set<String> nodes = Sets.symmetricDifference(expected.nodes, actual.nodes).immutableCopy();
+    assertTrue(nodes.isEmpty(), nodes::toString);
+    Set<String> edges = Sets.symmetricDifference(expected.edges, actual.edges).immutableCopy();
+    assertTrue(edges.isEmpty(), edges::toString);
+  }
+
+  @Test
+  void testChangedBody() throws IOException {
+    Path before = Utils.copySamples(dir.resolve("before"), false);
+    Path after = Utils.copySamples(dir.resolve("after"), true);
+    List<String> tests = Arrays.asList("TestA", "TestB", "TestC");
+    Graph first = build(before, tests, null, null, dir.resolve("first.bin.gz"));
+    Graph expected = build(after, tests, null, null, dir.resolve("expected.bin.gz"));
+    assertNotEquals(first.edges, expected.edges);
+
+    check(expected, build(after, tests, dir.resolve("first.bin.gz"), CHANGED, dir.resolve("updated.bin.gz")));
+    // The state of an updated graph is recorded from the previous state, and updates back to the first graph.
+    check(first, build(before, tests, dir.resolve("updated.bin.gz"), CHANGED, dir.resolve("reverted.bin.gz")));
+  }
+
+  @Test
+  void testChangedEntries() throws IOException {
+    Path root = Utils.copySamples(dir.resolve("root"), false);
+    build(root, Arrays.asList("TestA", "TestC"), null, null, dir.resolve("first.bin.gz"));
+    List<String> tests = Arrays.asList("TestB", "TestC", "TestD");
+    Graph expected = build(root, tests, null, null, dir.resolve("expected.bin.gz"));
+    check(expected, build(root, tests, dir.resolve("first.bin.gz"), Collections.emptySet(),
+            dir.resolve("updated.bin.gz")));
+  }
+
+  @Test
+  void testNoChange() throws IOException {
+    Path root = Utils.copySamples(dir.resolve("root"), false);
+    List<String> tests = Arrays.asList("TestA", "TestB", "TestC", "TestD");
+    Graph expected = build(root, tests, null, null, dir.resolve("first.bin.gz"));
+    check(expected, build(root, tests, dir.resolve("first.bin.gz"), Collections.emptySet(),
+            dir.resolve("updated.bin.gz")));
+  }
+
+  @Test
+  void testRoundTrip() throws IOException {
+    Path root = Utils.copySamples(dir.resolve("root"), false);
+    build(root, Arrays.asList("TestA", "TestB", "TestC"), null, null, dir.resolve("first.bin.gz"));
+    RTAState.read(dir.resolve("first.bin.gz")).write(dir.resolve("second.bin.gz"));
+    assertArrayEquals(Files.readAllBytes(dir.resolve("first.bin.gz")),
+            Files.readAllBytes(dir.resolve("second.bin.gz")));
+  }
+}
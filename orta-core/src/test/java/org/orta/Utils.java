@@ -37,7 +37,21 @@ package org.orta;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Set;
 import java.util.stream.Stream;
 
@@ -57,4 +71,48 @@ public class Utils {
             .immutableCopy();
     assertTrue(diff.isEmpty(), diff::toString);
   }
+
+  /**
+   * Copies the sample classes into the classpath {@code root}, and makes {@code TestC.testC()} instantiate
+   * {@code B} if {@code changed}. The new type adds the dispatch of {@code A.getA()} to {@code B.getA()} in the
+   * graphs of the other tests.
+   */
+  public static Path copySamples(Path root, boolean changed) throws IOException {
+    Path source;
+    try {
+      source = Paths.get(ClassLoader.getSystemResource("sample").toURI());
+    } catch (URISyntaxException e) {
+      throw new IOException(e);
+    }
+
+    Path target = root.resolve("sample");
+    Files.createDirectories(target);
+    try (Stream<Path> files = Files.list(source)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.copy(file, target.resolve(file.getFileName().toString()));
+      }
+    }
+
+    if (changed) {
+      Path file = target.resolve("TestC.class");
+      ClassNode node = new ClassNode();
+      new ClassReader(Files.readAllBytes(file)).accept(node, 0);
+      for (MethodNode method : node.methods) {
+        if (method.name.equals("testC")) {
+          InsnList insns = new InsnList();
+          insns.add(new TypeInsnNode(Opcodes.NEW, "sample/B"));
+          insns.add(new InsnNode(Opcodes.DUP));
+          insns.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, "sample/B", "<init>", "()V", false));
+          insns.add(new InsnNode(Opcodes.POP));
+          method.instructions.insert(insns);
+        }
+      }
+
+      ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+      node.accept(writer);
+      Files.write(file, writer.toByteArray());
+    }
+
+    return root;
+  }
 }
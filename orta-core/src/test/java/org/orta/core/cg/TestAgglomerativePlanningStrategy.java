@@ -0,0 +1,97 @@
+package org.orta.core.cg;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+
+import org.orta.core.util.bitmap.RoaringBitSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TestAgglomerativePlanningStrategy {
+
+  private static ImpactBitSet impacts(int... impacts) {
+    ImpactBitSet bits = new ImpactBitSet();
+    for (int impact : impacts) {
+      bits.setStatic(impact);
+    }
+
+    return bits;
+  }
+
+  private static OrderingKey entry(int id, int... impacts) {
+    RoaringBitSet klasses = new RoaringBitSet();
+    klasses.set(id);
+    return new OrderingKey(klasses, new Placeholder(impacts(impacts)));
+  }
+
+  @Test
+  void testMergeOrder() {
+    List<OrderingKey> entries = Arrays.asList(
+            entry(0, 1, 2, 3, 4, 5),
+            entry(1, 1, 2, 3, 4, 6),
+            entry(2, 1, 2, 7),
+            entry(3, 8, 9),
+            entry(4, 8, 10),
+            entry(5, 1, 2, 11));
+    List<OrderingKey> roots = new ArrayList<>(PlanningStrategy.agglomerative().plan(entries, new ORTASetting()));
+    assertEquals(2, roots.size());
+
+    // The first two entries share the most, so they are merged first. Entries 2 and 5 share as much with each other
+    // as with that cluster, and their cluster is flattened into the cluster that merges them with it.
+    OrderingKey first = entries.get(0).getParent();
+    assertSame(first, entries.get(1).getParent());
+    assertEquals(impacts(1, 2, 3, 4), first.getPlaceholder().getImpactBits());
+
+    OrderingKey root = roots.get(0);
+    assertNull(root.getParent());
+    assertEquals(impacts(1, 2), root.getPlaceholder().getImpactBits());
+    assertEquals(new HashSet<>(Arrays.asList(first, entries.get(2), entries.get(5))),
+            new HashSet<>(root.getChildren()));
+    assertSame(root, first.getParent());
+
+    // Entries 3 and 4 share the least, and only with each other, so they are merged last.
+    OrderingKey other = roots.get(1);
+    assertEquals(impacts(8), other.getPlaceholder().getImpactBits());
+    assertEquals(new HashSet<>(Arrays.asList(entries.get(3), entries.get(4))), new HashSet<>(other.getChildren()));
+  }
+}
@@ -0,0 +1,89 @@
+package org.orta.core.cg;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+
+import org.orta.core.util.bitmap.RoaringBitSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestMinHashIndex {
+
+  private static OrderingKey key(int id, int from, int to) {
+    RoaringBitSet klasses = new RoaringBitSet();
+    klasses.set(id);
+    ImpactBitSet impacts = new ImpactBitSet();
+    for (int i = from; i < to; i++) {
+      impacts.setObj(i);
+      impacts.setStatic(i);
+      impacts.setDynamic(i);
+    }
+
+    return new OrderingKey(klasses, new Placeholder(impacts));
+  }
+
+  @Test
+  void testIdenticalAndDisjoint() {
+    MinHashIndex index = new MinHashIndex(20, 3);
+    OrderingKey key = key(0, 0, 100);
+    OrderingKey same = key(1, 0, 100);
+    OrderingKey disjoint = key(2, 100, 200);
+    index.add(key);
+    index.add(same);
+    index.add(disjoint);
+
+    // Identical impacts have identical signatures, so they share every band.
+    assertEquals(Collections.singleton(same), index.similarTo(key));
+    assertEquals(Collections.singleton(key), index.similarTo(same));
+    assertTrue(index.similarTo(disjoint).isEmpty());
+
+    index.remove(same);
+    assertTrue(index.similarTo(key).isEmpty());
+  }
+
+  @Test
+  void testEmptyImpacts() {
+    MinHashIndex index = new MinHashIndex(20, 3);
+    OrderingKey empty = key(0, 0, 0);
+    OrderingKey other = key(1, 0, 0);
+    index.add(empty);
+    index.add(other);
+    assertTrue(index.similarTo(empty).isEmpty());
+  }
+}
@@ -0,0 +1,181 @@
+package org.orta.core.cg;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.graph.EndpointPair;
+import org.orta.AnalysisSetting;
+import org.orta.Utils;
+import org.orta.core.type.AnalysisSession;
+import org.orta.core.type.klass.Klass;
+import org.orta.core.type.klass.KlassMethod;
+import org.orta.core.util.bitmap.RoaringBitSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestPersistedPlan {
+
+  private static final String[] EXCLUSIONS = {"java\\/awt\\/.*", "javax\\/swing\\/.*", "sun\\/awt\\/.*",
+          "sun\\/swing\\/.*", "com\\/sun\\/.*", "sun\\/.*", "java\\/security\\/.*"};
+
+  @TempDir
+  Path dir;
+
+  private PersistedPlan recorded;
+
+  /**
+   * The nodes and edges of a graph by their signatures, so that graphs of different sessions can be compared. As in
+   * {@link org.orta.TestGraphCompatibility}, the edges of the fake caller are left out, since they depend on the
+   * layers the impacts are applied in.
+   */
+  private static Set<String> signaturesOf(CallGraph cg, KlassMethod fakeCaller) {
+    Set<String> signatures = new TreeSet<>();
+    for (Iterator<KlassMethod> it = cg.nodes(); it.hasNext(); ) {
+      signatures.add(it.next().getSignature());
+    }
+
+    for (EndpointPair<KlassMethod> edge : cg.edges()) {
+      if (!edge.source().equals(fakeCaller) && !edge.target().equals(fakeCaller)) {
+        signatures.add(edge.source().getSignature() + " -> " + edge.target().getSignature());
+      }
+    }
+
+    return signatures;
+  }
+
+  /**
+   * Constructs the graphs of {@code tests} in a new session over the classes of {@code root}, and records the plan.
+   */
+  private Map<String, Set<String>> build(Path root, List<String> tests, ORTASetting setting) throws IOException {
+    try (AnalysisSession session = new AnalysisSetting().addClassPath(root).excludePackages(EXCLUSIONS).build()) {
+      Set<Klass> klasses = new LinkedHashSet<>();
+      for (String test : tests) {
+        klasses.add(session.getOrCreateKlass("sample/" + test));
+      }
+
+      Map<String, Set<String>> graphs = new TreeMap<>();
+      ORTACallGraphBuilder.build(session, klasses, setting.recordPlan(x -> recorded = x),
+              (name, cg) -> graphs.put(name, signaturesOf(cg, session.getFakeCaller())));
+      return graphs;
+    }
+  }
+
+  /**
+   * Writes the plan of the last build and reads it back, as the next run does.
+   */
+  private PersistedPlan reload() throws IOException {
+    assertNotNull(recorded);
+    Path path = dir.resolve("plan.bin.gz");
+    recorded.write(path);
+    return PersistedPlan.read(path);
+  }
+
+  private static void check(Map<String, Set<String>> expected, Map<String, Set<String>> actual) {
+    assertEquals(expected.keySet(), actual.keySet());
+    for (String name : expected.keySet()) {
+      Set<String> diff = Sets.symmetricDifference(expected.get(name), actual.get(name)).immutableCopy();
+      assertTrue(diff.isEmpty(), () -> name + ": " + diff);
+    }
+  }
+
+  @Test
+  void testNoChange() throws IOException {
+    Path root = Utils.copySamples(dir.resolve("root"), false);
+    List<String> tests = Arrays.asList("TestA", "TestB", "TestC", "TestD");
+    Map<String, Set<String>> expected = build(root, tests, new ORTASetting());
+    PersistedPlan previous = reload();
+    check(expected, build(root, tests, new ORTASetting().reusePlan(previous, name -> true)));
+    // The plan recorded by the reusing run is reused again.
+    check(expected, build(root, tests, new ORTASetting().reusePlan(reload(), name -> true)));
+  }
+
+  @Test
+  void testChangedAndAddedEntries() throws IOException {
+    Path before = Utils.copySamples(dir.resolve("before"), false);
+    Path after = Utils.copySamples(dir.resolve("after"), true);
+    build(before, Arrays.asList("TestA", "TestB", "TestC", "TestD"), new ORTASetting());
+    PersistedPlan previous = reload();
+
+    // TestC is changed and Implementation is added, so the layers of TestC are analyzed again and Implementation
+    // is inserted into the previous trees, while the other shared layers are restored.
+    Set<String> changed = ImmutableSet.of("sample.TestC", "sample.Implementation");
+    Predicate<String> unchanged = name -> !changed.contains(name);
+    List<String> tests = Arrays.asList("TestA", "TestB", "TestC", "TestD", "Implementation");
+    Map<String, Set<String>> expected = build(after, tests, new ORTASetting());
+    check(expected, build(after, tests, new ORTASetting().reusePlan(previous, unchanged)));
+  }
+
+  @Test
+  void testFindParentWithDynamicImpacts() {
+    // A key with only dynamic impacts counts none of them, but an entry below it must still have them all.
+    ImpactBitSet impacts = new ImpactBitSet();
+    impacts.setDynamic(1);
+    RoaringBitSet klasses = new RoaringBitSet();
+    klasses.set(0);
+    klasses.set(1);
+    OrderingKey key = new OrderingKey(klasses, new Placeholder(impacts));
+    RoaringBitSet child = new RoaringBitSet();
+    child.set(0);
+    new OrderingKey(child, new Placeholder(new ImpactBitSet())).setParent(key);
+
+    ImpactBitSet bits = new ImpactBitSet();
+    bits.setStatic(2);
+    assertNull(PersistedPlan.findParent(Collections.singleton(key), bits));
+
+    bits.setDynamic(1);
+    assertSame(key, PersistedPlan.findParent(Collections.singleton(key), bits));
+  }
+}
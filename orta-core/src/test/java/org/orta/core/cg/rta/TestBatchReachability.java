@@ -0,0 +1,145 @@
+package org.orta.core.cg.rta;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Streams;
+import org.orta.AnalysisSetting;
+import org.orta.core.type.AnalysisSession;
+import org.orta.core.type.TypeHelper;
+import org.orta.core.type.klass.KlassMethod;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.orta.Utils.assertStreamEquals;
+
+class TestBatchReachability {
+
+  private static final int NODES = 400;
+  private static final int KEYS = 150;
+
+  private final AnalysisSession session = new AnalysisSetting().build();
+
+  TestBatchReachability() throws IOException, URISyntaxException {
+  }
+
+  private List<KlassMethod> methods() {
+    Set<KlassMethod> methods = new LinkedHashSet<>();
+    for (Class<?> cls : new Class<?>[]{String.class, StringBuilder.class, ArrayList.class, HashMap.class,
+            LinkedHashMap.class, HashSet.class, Random.class, Integer.class, Long.class, Character.class}) {
+      methods.addAll(TypeHelper.resolveInvocableMethods(session.getOrCreateKlass(cls)));
+    }
+
+    return new ArrayList<>(methods).subList(0, NODES);
+  }
+
+  /**
+   * Compares the batch against a traversal per set on a random graph with cycles. Several sets share their entries
+   * or enter the same cycle, and there are more sets than the bits of one mark word.
+   */
+  @Test
+  void testAgainstTraversals() {
+    Random random = new Random(42);
+    List<KlassMethod> methods = methods();
+    RTACallGraph cg = new RTACallGraph(session.getFakeCaller(), true);
+    for (KlassMethod m : methods) {
+      cg.markVisited(m);
+    }
+
+    List<List<KlassMethod>> cycles = new ArrayList<>();
+    for (int start = 0; start + 8 <= NODES; start += 40) {
+      List<KlassMethod> cycle = methods.subList(start, start + 8);
+      for (int i = 0; i < cycle.size(); i++) {
+        cg.registerInvocation(cycle.get(i), cycle.get((i + 1) % cycle.size()));
+      }
+
+      cycles.add(cycle);
+    }
+
+    for (int i = 0; i < NODES; i++) {
+      cg.registerInvocation(methods.get(random.nextInt(NODES)), methods.get(random.nextInt(NODES)));
+    }
+
+    cg.registerImplicitInvocation(methods.get(NODES - 1));
+
+    Map<Integer, Set<KlassMethod>> entries = new HashMap<>();
+    for (int k = 0; k < KEYS; k++) {
+      Set<KlassMethod> set = new HashSet<>();
+      switch (k % 3) {
+        case 0:
+          List<KlassMethod> cycle = cycles.get(random.nextInt(cycles.size()));
+          set.add(cycle.get(random.nextInt(cycle.size())));
+          break;
+        case 1:
+          set.add(methods.get(random.nextInt(NODES)));
+          set.add(methods.get(random.nextInt(NODES)));
+          break;
+        default:
+          // Left empty for some keys, which reach only what the root reaches.
+          if (k % 5 != 0) {
+            set.add(methods.get(random.nextInt(NODES)));
+          }
+      }
+
+      entries.put(k, set);
+    }
+
+    check(cg, entries);
+    cg.getGraph().freeze();
+    check(cg, entries);
+  }
+
+  private static void check(RTACallGraph cg, Map<Integer, Set<KlassMethod>> entries) {
+    Set<Integer> seen = new HashSet<>();
+    cg.forEachReachables(entries, (key, reachables) -> {
+      assertStreamEquals(ImmutableSet.copyOf(cg.getReachables(entries.get(key))), Streams.stream(reachables));
+      seen.add(key);
+    });
+    assertEquals(entries.keySet(), seen);
+  }
+}
@@ -0,0 +1,157 @@
+package org.orta.core.cg.rta;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Streams;
+import org.orta.AnalysisSetting;
+import org.orta.core.cg.CallGraph;
+import org.orta.core.type.AnalysisSession;
+import org.orta.core.type.TypeHelper;
+import org.orta.core.type.klass.Klass;
+import org.orta.core.type.klass.KlassMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sample.TestA;
+import sample.TestB;
+import sample.TestC;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.orta.Utils.assertStreamEquals;
+
+class TestMappedCallGraph {
+
+  private final AnalysisSession session = new AnalysisSetting()
+          .addClassPath(ClassLoader.getSystemResource("."))
+          .excludePackages(new String[]{"java\\/awt\\/.*", "javax\\/swing\\/.*", "sun\\/awt\\/.*",
+                  "sun\\/swing\\/.*", "com\\/sun\\/.*", "sun\\/.*", "java\\/security\\/.*"})
+          .build();
+
+  @TempDir
+  Path dir;
+
+  TestMappedCallGraph() throws IOException, URISyntaxException {
+  }
+
+  private Set<KlassMethod> entries() {
+    Set<KlassMethod> entries = new LinkedHashSet<>();
+    for (Class<?> test : new Class<?>[]{TestA.class, TestB.class, TestC.class}) {
+      entries.addAll(TypeHelper.resolveInvocableMethods(session.getOrCreateKlass(test)));
+    }
+
+    return entries;
+  }
+
+  private CallGraph createGraph(Set<KlassMethod> entries) {
+    Set<Klass> klasses = new LinkedHashSet<>();
+    for (KlassMethod m : entries) {
+      klasses.add(m.getDeclaringClass());
+    }
+
+    return RTA.get().createCallGraph(session, klasses, entries);
+  }
+
+  @Test
+  void testRoundTrip() throws IOException {
+    Set<KlassMethod> entries = entries();
+    CallGraph source = createGraph(entries);
+    Path path = dir.resolve("graph.bin");
+    MappedCallGraph.write(source, path, session.getFakeCaller());
+    MappedCallGraph mapped = MappedCallGraph.load(path, session);
+
+    ImmutableSet<KlassMethod> nodes = ImmutableSet.copyOf(source.nodes());
+    assertEquals(nodes.size(), mapped.nodeCount());
+    assertEquals(source.edges().size(), mapped.edgeCount());
+    assertStreamEquals(nodes, Streams.stream(mapped.nodes()));
+    assertStreamEquals(ImmutableSet.copyOf(source.edges()), mapped.edges().stream());
+
+    List<KlassMethod> samples = new ArrayList<>();
+    for (KlassMethod m : nodes) {
+      assertStreamEquals(ImmutableSet.copyOf(source.successors(m)), mapped.successors(m).stream());
+      assertStreamEquals(source.getCallersOf(m).immutableCopy(), mapped.getCallersOf(m).stream());
+      if (m.getDeclaringClass().getPackageName().equals("sample")) {
+        samples.add(m);
+      }
+    }
+
+    // The traversals are compared from the methods of the fixtures, which reach most of the graph.
+    for (KlassMethod m : samples) {
+      assertStreamEquals(ImmutableSet.copyOf(source.getReachables(m)), Streams.stream(mapped.getReachables(m)));
+    }
+
+    assertStreamEquals(ImmutableSet.copyOf(source.getReachables(entries)),
+            Streams.stream(mapped.getReachables(entries)));
+  }
+
+  @Test
+  void testCorruptedByte() throws IOException {
+    Path path = dir.resolve("graph.bin");
+    MappedCallGraph.write(createGraph(entries()), path, session.getFakeCaller());
+    byte[] bytes = Files.readAllBytes(path);
+    bytes[bytes.length / 2] ^= 1;
+    Files.write(path, bytes);
+    IOException e = assertThrows(IOException.class, () -> MappedCallGraph.load(path, session));
+    assertTrue(e.getMessage().contains("checksum"), e.getMessage());
+  }
+
+  @Test
+  void testWrongVersion() throws IOException {
+    Path path = dir.resolve("graph.bin");
+    MappedCallGraph.write(createGraph(entries()), path, session.getFakeCaller());
+    // The checksum is updated as well, so that only the version is rejected.
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+    buffer.putInt(4, buffer.getInt(4) + 1);
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), 0, buffer.capacity() - 8);
+    buffer.putLong(buffer.capacity() - 8, crc.getValue());
+    Files.write(path, buffer.array());
+    IOException e = assertThrows(IOException.class, () -> MappedCallGraph.load(path, session));
+    assertTrue(e.getMessage().contains("version"), e.getMessage());
+  }
+}
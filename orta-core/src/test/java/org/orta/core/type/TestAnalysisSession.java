@@ -40,11 +40,21 @@ import org.orta.core.type.klass.Klass;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.objectweb.asm.Type;
+import sample.A;
+import sample.B;
+import sample.C;
+import sample.DefaultMethod;
+import sample.Implementation;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TestAnalysisSession {
 
@@ -84,4 +94,25 @@ class TestAnalysisSession {
     cls = long[][].class;
     assertEquals("Long[][]", session.getOrCreateArrayType(Type.getType(cls)).toString());
   }
+
+  @Test
+  void testSupertypes() throws IOException, URISyntaxException {
+    try (AnalysisSession samples = new AnalysisSetting().addClassPath(ClassLoader.getSystemResource(".")).build()) {
+      Klass impl = samples.getOrCreateKlass(Implementation.class);
+      Set<String> names = new TreeSet<>();
+      impl.getSupertypes().forEach(k -> names.add(k.getTypeName()));
+      assertEquals(new TreeSet<>(Arrays.asList("java.lang.Object", "sample.AbstractClass", "sample.DefaultMethod",
+              "sample.DefaultMethod$A", "sample.DefaultMethod$B", "sample.Implementation")), names);
+      for (Klass k : impl.getSupertypes()) {
+        assertTrue(impl.inherits(k), k::toString);
+      }
+
+      Klass b = samples.getOrCreateKlass(B.class);
+      Klass c = samples.getOrCreateKlass(C.class);
+      assertTrue(b.inherits(samples.getOrCreateKlass(A.class)));
+      assertFalse(b.inherits(c));
+      assertFalse(c.inherits(b));
+      assertFalse(samples.getOrCreateKlass(DefaultMethod.class).inherits(impl));
+    }
+  }
 }
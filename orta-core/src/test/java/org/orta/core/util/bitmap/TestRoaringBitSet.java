@@ -0,0 +1,138 @@
+package org.orta.core.util.bitmap;
+
+/*-
+ * #%L
+ * orta-core
+ * %%
+ * Copyright (C) 2019 https://github.com/rts-orta
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Team ORTA nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestRoaringBitSet {
+
+  private static RoaringBitSet toRoaring(BitSet bits) {
+    RoaringBitSet result = new RoaringBitSet();
+    bits.stream().forEach(result::set);
+    return result;
+  }
+
+  private static BitSet toBitSet(RoaringBitSet bits) {
+    BitSet result = new BitSet();
+    bits.forEach(result::set);
+    return result;
+  }
+
+  // Mixes sparse values, dense blocks and long runs so that every kind of container is exercised.
+  private static BitSet randomBits(Random random) {
+    BitSet bits = new BitSet();
+    for (int i = random.nextInt(2000); i > 0; i--) {
+      bits.set(random.nextInt(300000));
+    }
+
+    for (int i = random.nextInt(6000); i > 0; i--) {
+      bits.set(65536 + random.nextInt(10000));
+    }
+
+    for (int i = random.nextInt(10); i > 0; i--) {
+      int start = random.nextInt(300000);
+      bits.set(start, start + random.nextInt(10000));
+    }
+
+    return bits;
+  }
+
+  private static long sum(BitSet bits, int[] weights) {
+    long sum = 0;
+    for (int x = bits.nextSetBit(0); x >= 0; x = bits.nextSetBit(x + 1)) {
+      sum += weights[x];
+    }
+
+    return sum;
+  }
+
+  @Test
+  void testSingleBits() {
+    RoaringBitSet bits = new RoaringBitSet().set(3).set(70000).set(1);
+    assertTrue(bits.get(1));
+    assertFalse(bits.get(2));
+    assertEquals(3, bits.cardinality());
+    assertEquals(70000, bits.nextSetBit(4));
+    assertEquals(-1, bits.nextSetBit(70001));
+    assertEquals("{1, 3, 70000}", bits.toString());
+  }
+
+  @Test
+  void testOperationsMatchBitSet() {
+    Random random = new Random(0);
+    int[] weights = new int[320000];
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = random.nextInt(10);
+    }
+
+    for (int i = 0; i < 200; i++) {
+      BitSet lhs = randomBits(random);
+      BitSet rhs = randomBits(random);
+      RoaringBitSet roaringLhs = toRoaring(lhs);
+      RoaringBitSet roaringRhs = toRoaring(rhs);
+      if (random.nextBoolean()) {
+        roaringLhs.runOptimize();
+      }
+
+      BitSet and = (BitSet) lhs.clone();
+      and.and(rhs);
+      BitSet or = (BitSet) lhs.clone();
+      or.or(rhs);
+      BitSet andNot = (BitSet) lhs.clone();
+      andNot.andNot(rhs);
+
+      assertEquals(lhs.cardinality(), roaringLhs.cardinality());
+      assertEquals(lhs, toBitSet(roaringLhs));
+      assertEquals(and, toBitSet(roaringLhs.intersect(roaringRhs)));
+      assertEquals(and.cardinality(), roaringLhs.intersectionCardinality(roaringRhs));
+      assertEquals(or, toBitSet(roaringLhs.union(roaringRhs)));
+      assertEquals(andNot, toBitSet(roaringLhs.difference(roaringRhs)));
+      assertEquals(sum(lhs, weights), roaringLhs.sum(weights));
+      assertEquals(sum(and, weights), roaringLhs.intersectionSum(roaringRhs, weights));
+      assertEquals(toRoaring(or), roaringLhs.union(roaringRhs));
+      assertEquals(toRoaring(or).hashCode(), roaringLhs.union(roaringRhs).hashCode());
+
+      int from = random.nextInt(310000);
+      assertEquals(lhs.nextSetBit(from), roaringLhs.nextSetBit(from));
+    }
+  }
+}
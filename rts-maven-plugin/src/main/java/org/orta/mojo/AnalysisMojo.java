@@ -55,6 +55,7 @@ import experiments.commons.MavenConstants;
 import org.orta.AnalysisSetting;
 import org.orta.core.cg.CallGraph;
 import org.orta.core.cg.ORTACallGraphBuilder;
+import org.orta.core.cg.PlanEstimate;
 import org.orta.core.type.AnalysisSession;
 import org.orta.core.type.klass.Klass;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -92,7 +93,8 @@ public class AnalysisMojo extends BaseMojo {
         klasses.add(loadKlass(sess, name));
       }
 
-      ORTACallGraphBuilder.validate(sess, klasses);
+      PlanEstimate estimate = ORTACallGraphBuilder.plan(klasses).estimate();
+      getLog().info("ORTA plan: " + estimate);
     } catch (IOException e) {
       throw mojoException(e);
     }
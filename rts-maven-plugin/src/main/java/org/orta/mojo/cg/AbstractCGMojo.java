@@ -68,10 +68,12 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 abstract class AbstractCGMojo extends BaseMojo {
   @Parameter(property = "oldArtifactsRoot")
@@ -114,8 +116,7 @@ abstract class AbstractCGMojo extends BaseMojo {
         reachables.rowMap().remove(name);
       }
 
-      for (String testName : affected) {
-        Iterator<KlassMethod> iter = findReachables(sess, testName, affected);
+      findReachables(sess, affected, (testName, iter) -> {
         while (iter.hasNext()) {
           KlassMethod reachable = iter.next();
           if (reachable.getDeclaringClass().getPackageName().startsWith("rtscg.") || reachable.equals(sess.getFakeCaller())) {
@@ -131,7 +132,7 @@ abstract class AbstractCGMojo extends BaseMojo {
 
           selectors.add(reachable.getSelector());
         }
-      }
+      });
 
       getReachablesArtifact().acceptArtifact(reachables, artifactRoot);
       getLog().info("Construction Time: " + getTotalTime() / 1000.0);
@@ -143,5 +144,9 @@ abstract class AbstractCGMojo extends BaseMojo {
 
   protected abstract long getTotalTime();
 
-  abstract Iterator<KlassMethod> findReachables(AnalysisSession sess, String className, Set<String> affected);
+  /**
+   * Hands the reachable methods of each affected test to {@code consumer}, one test at a time.
+   */
+  abstract void findReachables(AnalysisSession sess, Set<String> affected,
+                               BiConsumer<String, Iterator<KlassMethod>> consumer) throws IOException;
 }
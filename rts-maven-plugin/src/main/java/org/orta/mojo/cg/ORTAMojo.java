@@ -55,24 +55,51 @@ import com.google.common.collect.Table;
 import experiments.commons.MavenConstants;
 import experiments.commons.artifacts.Artifact;
 import experiments.commons.artifacts.ArtifactHandler;
-import org.orta.core.cg.CallGraph;
 import org.orta.core.cg.ORTACallGraphBuilder;
+import org.orta.core.cg.ORTASetting;
+import org.orta.core.cg.PersistedPlan;
+import org.orta.core.cg.PlanningStrategy;
 import org.orta.core.type.AnalysisSession;
 import org.orta.core.type.klass.Klass;
 import org.orta.core.type.klass.KlassMethod;
+import org.orta.diff.ClassHash;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 @Mojo(defaultPhase = LifecyclePhase.TEST_COMPILE, name = MavenConstants.ORTA, requiresDependencyResolution = ResolutionScope.TEST)
 public class ORTAMojo extends AbstractCGMojo {
-  private Map<String, CallGraph> graphs;
+  @Parameter(property = "planningThreads", defaultValue = "0")
+  protected int planningThreads;
+  @Parameter(property = "constructionThreads", defaultValue = "0")
+  protected int constructionThreads;
+  @Parameter(property = "planningStrategy", defaultValue = "greedy")
+  protected String planningStrategy;
+  @Parameter(property = "weightedPlanning", defaultValue = "false")
+  protected boolean weightedPlanning;
+  @Parameter(property = "planningBands", defaultValue = "0")
+  protected int planningBands;
+  @Parameter(property = "planningRows", defaultValue = "3")
+  protected int planningRows;
+  @Parameter(property = "reusePlan", defaultValue = "false")
+  protected boolean reusePlan;
+  @Parameter(property = "constructionMemoryMB", defaultValue = "0")
+  protected long constructionMemoryMB;
+  @Parameter(property = "minSharedRatio", defaultValue = "0.3")
+  protected double minSharedRatio;
+  private static final String PLAN_FILENAME = "orta_plan.bin.gz";
+  private PersistedPlan plan;
   private long time;
 
   @Override
@@ -90,18 +117,70 @@ public class ORTAMojo extends AbstractCGMojo {
     return time;
   }
 
-  Iterator<KlassMethod> findReachables(AnalysisSession sess, String className, Set<String> affected) {
-    if (graphs == null) {
-      Set<Klass> klasses = new HashSet<>();
-      for (String s : affected) {
-        klasses.add(loadKlass(sess, s));
-      }
-      long time = System.currentTimeMillis();
-      graphs = ORTACallGraphBuilder.build(sess, klasses);
-      this.time = System.currentTimeMillis() - time;
+  void findReachables(AnalysisSession sess, Set<String> affected,
+                      BiConsumer<String, Iterator<KlassMethod>> consumer) throws IOException {
+    Set<Klass> klasses = new HashSet<>();
+    for (String s : affected) {
+      klasses.add(loadKlass(sess, s));
+    }
+    long time = System.currentTimeMillis();
+    ORTASetting setting = new ORTASetting().parallelPlanning(planningThreads)
+            .parallelConstruction(constructionThreads)
+            .planningStrategy(PlanningStrategy.forName(planningStrategy))
+            .workWeightedPlanning(weightedPlanning)
+            .separateFallback(minSharedRatio)
+            .reachabilityOnly(true);
+    if (planningBands > 0) {
+      setting.approximatePlanning(planningBands, planningRows);
+    }
+    if (constructionMemoryMB > 0) {
+      setting.memoryBudget(constructionMemoryMB << 20);
+    }
+    if (reusePlan) {
+      setting.recordPlan(x -> this.plan = x);
+      loadPreviousPlan(setting);
+    }
+
+    // Each graph is consumed as soon as it is constructed, so that it is not kept until all graphs are done.
+    long[] consumingTime = new long[1];
+    ORTACallGraphBuilder.build(sess, klasses, setting, (className, cg) -> {
+      long t = System.currentTimeMillis();
+      consumer.accept(className, cg.nodes());
+      consumingTime[0] += System.currentTimeMillis() - t;
+    });
+    this.time = System.currentTimeMillis() - time - consumingTime[0];
+    if (plan != null) {
+      plan.write(artifactRoot.toPath().resolve(PLAN_FILENAME));
+      plan = null;
+    }
+  }
+
+  private void loadPreviousPlan(ORTASetting setting) throws IOException {
+    if (oldArtifactRoot == null) {
+      return;
+    }
+
+    Path previous = oldArtifactRoot.toPath().resolve(PLAN_FILENAME);
+    Map<String, ClassHash> prevHashes = Artifact.Hashes.loadArtifact(oldArtifactRoot);
+    Map<String, ClassHash> curHashes = Artifact.Hashes.loadArtifact(artifactRoot);
+    if (Files.notExists(previous) || prevHashes == null || curHashes == null) {
+      return;
+    }
+
+    Map<String, Boolean> unchanged = new ConcurrentHashMap<>();
+    setting.reusePlan(PersistedPlan.read(previous),
+            name -> unchanged.computeIfAbsent(name, x -> isUnchanged(prevHashes.get(x), curHashes.get(x))));
+  }
+
+  /**
+   * Classes that are not hashed, such as the ones of libraries, are assumed to be unchanged.
+   */
+  private static boolean isUnchanged(ClassHash prev, ClassHash cur) {
+    if (prev == null || cur == null) {
+      return prev == cur;
     }
 
-    CallGraph cg = Objects.requireNonNull(graphs.remove(className), className);
-    return cg.nodes();
+    return !cur.hasClassLevelChanges(prev) && cur.computeChangedMethodFromPrevious(prev).isEmpty()
+            && prev.computeChangedMethodFromPrevious(cur).isEmpty();
   }
 }
@@ -68,6 +68,7 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 @Mojo(defaultPhase = LifecyclePhase.TEST_COMPILE, name = MavenConstants.SEP_RTA, requiresDependencyResolution = ResolutionScope.TEST)
 public class SeparateRTAMojo extends AbstractCGMojo {
@@ -88,12 +89,15 @@ public class SeparateRTAMojo extends AbstractCGMojo {
     return time;
   }
 
-  Iterator<KlassMethod> findReachables(AnalysisSession sess, String className, Set<String> affected) {
-    Klass klass = loadKlass(sess, className);
-    long s = System.currentTimeMillis();
-    CallGraph rta = RTA.get().createCallGraph(sess, Collections.singleton(klass), TypeHelper.resolveInvocableMethods(klass));
-    time += System.currentTimeMillis() - s;
+  void findReachables(AnalysisSession sess, Set<String> affected,
+                      BiConsumer<String, Iterator<KlassMethod>> consumer) {
+    for (String className : affected) {
+      Klass klass = loadKlass(sess, className);
+      long s = System.currentTimeMillis();
+      CallGraph rta = RTA.reachabilityOnly().createCallGraph(sess, Collections.singleton(klass), TypeHelper.resolveInvocableMethods(klass));
+      time += System.currentTimeMillis() - s;
 
-    return rta.nodes();
+      consumer.accept(className, rta.nodes());
+    }
   }
 }
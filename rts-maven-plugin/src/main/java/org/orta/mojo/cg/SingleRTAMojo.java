@@ -53,28 +53,41 @@ package org.orta.mojo.cg;
 
 import com.google.common.collect.MultimapBuilder;
 import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import experiments.commons.MavenConstants;
 import experiments.commons.artifacts.Artifact;
 import experiments.commons.artifacts.ArtifactHandler;
 import org.orta.core.cg.CallGraph;
 import org.orta.core.cg.rta.RTA;
+import org.orta.core.cg.rta.RTAState;
 import org.orta.core.type.AnalysisSession;
 import org.orta.core.type.TypeHelper;
 import org.orta.core.type.klass.Klass;
 import org.orta.core.type.klass.KlassMethod;
+import org.orta.diff.ClassHash;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 @Mojo(defaultPhase = LifecyclePhase.TEST_COMPILE, name = MavenConstants.SINGLE_RTA, requiresDependencyResolution = ResolutionScope.TEST)
 public class SingleRTAMojo extends AbstractCGMojo {
-  private CallGraph graph;
-  private SetMultimap<String, KlassMethod> entriesOfKlasses;
+  @Parameter(property = "rtaThreads", defaultValue = "0")
+  protected int rtaThreads;
+  @Parameter(property = "incrementalRTA", defaultValue = "false")
+  protected boolean incrementalRTA;
+  private static final String STATE_FILENAME = "rta_state.bin.gz";
 
   @Override
   protected ArtifactHandler<Set<String>> getAffectedArtifact() {
@@ -91,20 +104,84 @@ public class SingleRTAMojo extends AbstractCGMojo {
     return 0;
   }
 
-  Iterator<KlassMethod> findReachables(AnalysisSession sess, String className, Set<String> affected) {
-    if (graph == null) {
-      entriesOfKlasses = MultimapBuilder.hashKeys().hashSetValues().build();
-      Set<Klass> klasses = new HashSet<>();
-      for (String name : affected) {
-        Klass klass = loadKlass(sess, name);
-        Set<KlassMethod> klsEntries = TypeHelper.resolveInvocableMethods(klass);
-        entriesOfKlasses.putAll(name, klsEntries);
-        klasses.add(klass);
+  void findReachables(AnalysisSession sess, Set<String> affected,
+                      BiConsumer<String, Iterator<KlassMethod>> consumer) throws IOException {
+    SetMultimap<String, KlassMethod> entriesOfKlasses = MultimapBuilder.hashKeys().hashSetValues().build();
+    Set<Klass> klasses = new HashSet<>();
+    for (String name : affected) {
+      Klass klass = loadKlass(sess, name);
+      Set<KlassMethod> klsEntries = TypeHelper.resolveInvocableMethods(klass);
+      entriesOfKlasses.putAll(name, klsEntries);
+      klasses.add(klass);
+    }
+
+    CallGraph graph;
+    if (incrementalRTA) {
+      graph = updatePreviousGraph(sess, klasses, entriesOfKlasses.values());
+    } else {
+      graph = RTA.get().createCallGraph(sess, klasses, entriesOfKlasses.values(), rtaThreads);
+    }
+
+    Map<String, Set<KlassMethod>> entries = new LinkedHashMap<>();
+    for (String className : affected) {
+      entries.put(className, entriesOfKlasses.get(className));
+    }
+
+    graph.forEachReachables(entries, consumer);
+  }
+
+  /**
+   * Updates the graph of the previous run if only the bodies of methods are changed since then, and records the
+   * state of the graph for the next run.
+   */
+  private CallGraph updatePreviousGraph(AnalysisSession sess, Set<Klass> klasses, Collection<KlassMethod> entries)
+          throws IOException {
+    RTAState previous = null;
+    Set<String> changed = null;
+    if (oldArtifactRoot != null && Files.exists(oldArtifactRoot.toPath().resolve(STATE_FILENAME))) {
+      changed = computeChangedMethods();
+      previous = changed == null ? null : RTAState.read(oldArtifactRoot.toPath().resolve(STATE_FILENAME));
+    }
+
+    CallGraph graph;
+    if (previous != null) {
+      graph = RTA.get().updateCallGraph(sess, previous, changed, klasses, entries);
+    } else {
+      graph = RTA.get().createCallGraph(sess, klasses, entries, rtaThreads);
+    }
+
+    RTAState state = RTA.get().captureState(sess, graph, klasses, entries);
+    if (state != null) {
+      state.write(artifactRoot.toPath().resolve(STATE_FILENAME));
+    }
+
+    return graph;
+  }
+
+  /**
+   * Returns the signatures of the methods whose bodies are changed, or null if a class is removed or has a
+   * class-level change.
+   */
+  private Set<String> computeChangedMethods() throws IOException {
+    Map<String, ClassHash> prevHashes = Artifact.Hashes.loadArtifact(oldArtifactRoot);
+    Map<String, ClassHash> curHashes = Artifact.Hashes.loadArtifact(artifactRoot);
+    if (prevHashes == null || curHashes == null) {
+      return null;
+    }
+
+    Set<String> changed = new HashSet<>();
+    for (ClassHash prev : prevHashes.values()) {
+      ClassHash cur = curHashes.get(prev.name);
+      if (cur == null || cur.hasClassLevelChanges(prev)) {
+        return null;
       }
 
-      graph = RTA.get().createCallGraph(sess, klasses, entriesOfKlasses.values());
+      for (String selector : Sets.union(cur.computeChangedMethodFromPrevious(prev),
+              prev.computeChangedMethodFromPrevious(cur))) {
+        changed.add(prev.name + "." + selector);
+      }
     }
 
-    return graph.getReachables(entriesOfKlasses.get(className)).iterator();
+    return changed;
   }
 }